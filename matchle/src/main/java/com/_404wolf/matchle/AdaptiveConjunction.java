@@ -0,0 +1,140 @@
+package com._404wolf.matchle;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * A conjunction of predicates that reorders itself by observed cost and selectivity.
+ *
+ * <p>Most evaluations run the conjuncts in the current order and stop at the first rejection. A
+ * small random sample of evaluations instead runs every conjunct, recording how long each took and
+ * whether it rejected the n-gram. Every {@link #REORDER_INTERVAL} samples the conjuncts are sorted
+ * by their cost per rejection, so cheap and selective conjuncts run first. The order is published
+ * through a volatile array, which keeps evaluation lock-free and safe to share between threads.
+ *
+ * <p>A conjunction given another conjunction as a conjunct inlines its conjuncts, together with the
+ * statistics they gathered, so combining conjunctions keeps one flat instance that starts from what
+ * was already learned.
+ */
+final class AdaptiveConjunction implements Predicate<NGram> {
+  /** One in {@code SAMPLE_MASK + 1} evaluations is measured. */
+  static final int SAMPLE_MASK = 63;
+
+  /** The number of measured evaluations between two reorderings. */
+  static final int REORDER_INTERVAL = 128;
+
+  /** The conjuncts, in the order they were given. */
+  private final Predicate<NGram>[] conjuncts;
+
+  /** The time spent in each conjunct during measured evaluations, in nanoseconds. */
+  private final AtomicLongArray nanos;
+
+  /** The number of measured evaluations each conjunct rejected. */
+  private final AtomicLongArray rejections;
+
+  /** The number of measured evaluations so far. */
+  private final AtomicLong samples = new AtomicLong();
+
+  /** The order in which the conjuncts are currently evaluated. */
+  private volatile int[] order;
+
+  /**
+   * Creates a conjunction of the given predicates. Predicates that are themselves adaptive
+   * conjunctions are inlined with their statistics, and the initial order follows those statistics.
+   *
+   * @param conjuncts the predicates to conjoin
+   */
+  @SuppressWarnings("unchecked")
+  AdaptiveConjunction(List<Predicate<NGram>> conjuncts) {
+    List<Predicate<NGram>> flat = new ArrayList<>();
+    List<long[]> statistics = new ArrayList<>();
+    for (Predicate<NGram> conjunct : conjuncts) {
+      if (conjunct instanceof AdaptiveConjunction nested) {
+        for (int i = 0; i < nested.conjuncts.length; i++) {
+          flat.add(nested.conjuncts[i]);
+          statistics.add(new long[] {nested.nanos.get(i), nested.rejections.get(i)});
+        }
+      } else {
+        flat.add(conjunct);
+        statistics.add(new long[] {0, 0});
+      }
+    }
+
+    this.conjuncts = flat.toArray(Predicate[]::new);
+    this.nanos = new AtomicLongArray(statistics.stream().mapToLong(s -> s[0]).toArray());
+    this.rejections = new AtomicLongArray(statistics.stream().mapToLong(s -> s[1]).toArray());
+    reorder();
+  }
+
+  @Override
+  public boolean test(NGram ngram) {
+    return (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0
+        ? measure(ngram)
+        : evaluate(ngram);
+  }
+
+  /**
+   * Returns the order in which the conjuncts are currently evaluated.
+   *
+   * @return the indices of the conjuncts, in evaluation order
+   */
+  int[] order() {
+    return order.clone();
+  }
+
+  /** Evaluates the conjuncts in the current order, stopping at the first rejection. */
+  private boolean evaluate(NGram ngram) {
+    for (int i : order) {
+      if (!conjuncts[i].test(ngram)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Evaluates every conjunct and records its cost and outcome. */
+  private boolean measure(NGram ngram) {
+    boolean passed = true;
+    for (int i = 0; i < conjuncts.length; i++) {
+      passed &= record(i, ngram);
+    }
+
+    if (samples.incrementAndGet() % REORDER_INTERVAL == 0) {
+      reorder();
+    }
+    return passed;
+  }
+
+  private boolean record(int i, NGram ngram) {
+    long start = System.nanoTime();
+    boolean passed = conjuncts[i].test(ngram);
+    nanos.addAndGet(i, System.nanoTime() - start);
+    rejections.addAndGet(i, passed ? 0 : 1);
+    return passed;
+  }
+
+  /**
+   * Sorts the conjuncts by their observed cost per rejection. A conjunct that never rejects has an
+   * unbounded rank and sinks to the end. The ranks are snapshotted before sorting, since other
+   * threads keep updating the counters and a sort key must not change during the sort.
+   */
+  private void reorder() {
+    double[] ranks = IntStream.range(0, conjuncts.length).mapToDouble(this::rank).toArray();
+    order =
+        IntStream.range(0, conjuncts.length)
+            .boxed()
+            .sorted(Comparator.comparingDouble(i -> ranks[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+  }
+
+  private double rank(int i) {
+    return (nanos.get(i) + 1.0) / rejections.get(i);
+  }
+}
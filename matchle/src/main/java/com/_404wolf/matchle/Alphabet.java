@@ -0,0 +1,200 @@
+package com._404wolf.matchle;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A dense numbering of the characters a corpus uses, so that words of any script can be packed into
+ * a single {@code long} and their letters into a bitmask.
+ *
+ * <p>Each of at most {@link #MAX_LETTERS} characters gets a code from 1 to the size of the
+ * alphabet; code 0 is never assigned, so an empty lane never equals a letter. A packed word stores
+ * the code of its character at index i in bits {@code [i * bits(), (i + 1) * bits())}, where {@link
+ * #bits()} is just wide enough for the largest code, and its letter mask has bit {@code code(c) -
+ * 1} set for every character c. A Russian corpus of 33 letters thus packs 10 letters per word, and
+ * an English one 12.
+ *
+ * <p>Alphabets are interned by their characters, so every corpus over the same characters shares
+ * one instance and n-grams can cache their packing by identity. {@link #LATIN}, the letters 'a' to
+ * 'z', is used for every corpus of lowercase ASCII words.
+ */
+final class Alphabet {
+  /** The most characters an alphabet holds, so that every code has a bit in a {@code long} mask. */
+  static final int MAX_LETTERS = Long.SIZE - 1;
+
+  /** The number of interned alphabets kept before the table is cleared. */
+  private static final int MAX_INTERNED = 1024;
+
+  private static final Map<String, Alphabet> INTERNED = new ConcurrentHashMap<>();
+
+  /** The lowercase ASCII letters, with 'a' to 'z' coded 1 to 26. */
+  static final Alphabet LATIN =
+      intern(IntStream.rangeClosed('a', 'z').mapToObj(c -> (char) c).collect(Collectors.toSet()));
+
+  /** The characters of the alphabet, in order of their codes from 1. */
+  private final char[] letters;
+
+  /** The code of every character up to the largest letter, or 0 if it is not a letter. */
+  private final byte[] codes;
+
+  private final int bits;
+
+  private Alphabet(char[] letters) {
+    this.letters = letters;
+    this.codes = new byte[letters.length == 0 ? 0 : letters[letters.length - 1] + 1];
+    IntStream.range(0, letters.length).forEach(i -> codes[letters[i]] = (byte) (i + 1));
+    this.bits = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(letters.length));
+  }
+
+  /**
+   * Computes the alphabet of the given n-grams. Lowercase ASCII corpora get {@link #LATIN}. If the
+   * n-grams use more than {@link #MAX_LETTERS} characters, the most frequent ones are kept and
+   * words with any other character are simply not packed.
+   *
+   * @param ngrams the n-grams to number the characters of
+   * @return the alphabet of the n-grams
+   * @throws NullPointerException if the argument is null
+   */
+  static Alphabet of(Iterable<NGram> ngrams) {
+    Objects.requireNonNull(ngrams, "ngrams cannot be null");
+
+    Map<Character, Integer> frequencies = new HashMap<>();
+    ngrams.forEach(ngram -> ngram.forEach(c -> frequencies.merge(c.character(), 1, Integer::sum)));
+    if (LATIN.containsAll(frequencies.keySet())) {
+      return LATIN;
+    }
+    return intern(
+        frequencies.entrySet().stream()
+            .sorted(
+                Map.Entry.<Character, Integer>comparingByValue(Comparator.reverseOrder())
+                    .thenComparing(Map.Entry.comparingByKey()))
+            .limit(MAX_LETTERS)
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toSet()));
+  }
+
+  private static Alphabet intern(Set<Character> characters) {
+    String key = characters.stream().sorted().map(String::valueOf).collect(Collectors.joining());
+    Alphabet interned = INTERNED.get(key);
+    if (interned != null) {
+      return interned;
+    }
+
+    if (INTERNED.size() >= MAX_INTERNED) {
+      INTERNED.clear();
+    }
+    return INTERNED.computeIfAbsent(key, k -> new Alphabet(k.toCharArray()));
+  }
+
+  private boolean containsAll(Set<Character> characters) {
+    return characters.stream().allMatch(c -> code(c) > 0);
+  }
+
+  /**
+   * Returns the number of characters in the alphabet.
+   *
+   * @return the number of characters
+   */
+  int size() {
+    return letters.length;
+  }
+
+  /**
+   * Returns the characters of the alphabet, in the order of their codes.
+   *
+   * @return the characters, coded from 1
+   */
+  List<Character> letters() {
+    return IntStream.range(0, letters.length)
+        .mapToObj(i -> letters[i])
+        .collect(Collectors.toUnmodifiableList());
+  }
+
+  /**
+   * Returns the code of a character.
+   *
+   * @param c the character to encode
+   * @return the code of the character from 1, or 0 if it is not in the alphabet
+   */
+  int code(char c) {
+    return c < codes.length ? codes[c] : 0;
+  }
+
+  /**
+   * Returns the number of bits each character takes in a packed word.
+   *
+   * @return the width of a lane
+   */
+  int bits() {
+    return bits;
+  }
+
+  /**
+   * Returns the mask of the lowest lane of a packed word.
+   *
+   * @return a mask of {@link #bits()} ones
+   */
+  long laneMask() {
+    return (1L << bits) - 1;
+  }
+
+  /**
+   * Returns the longest word that can be packed. The sign bit is never used, so every packed word
+   * is nonnegative.
+   *
+   * @return the number of lanes below the sign bit of a {@code long}
+   */
+  int maxPackedSize() {
+    return (Long.SIZE - 1) / bits;
+  }
+
+  /**
+   * Packs an n-gram: the code of the character at index i in lane i.
+   *
+   * @param ngram the n-gram to pack
+   * @return the packed n-gram, or -1 if it is too long or has a character outside the alphabet
+   */
+  long pack(NGram ngram) {
+    if (ngram.size() > maxPackedSize()) {
+      return -1L;
+    }
+
+    long packed = 0;
+    for (int i = 0; i < ngram.size(); i++) {
+      int code = code(ngram.get(i));
+      if (code == 0) {
+        return -1L;
+      }
+      packed |= (long) code << (i * bits);
+    }
+    return packed;
+  }
+
+  /**
+   * Returns the letter mask of a set of characters: bit {@code code(c) - 1} for every character c
+   * in the alphabet.
+   *
+   * @param characters the characters
+   * @return the letter mask, ignoring characters outside the alphabet
+   */
+  long mask(Set<Character> characters) {
+    return characters.stream()
+        .mapToInt(this::code)
+        .filter(code -> code > 0)
+        .mapToLong(code -> 1L << (code - 1))
+        .reduce(0L, (a, b) -> a | b);
+  }
+
+  @Override
+  public String toString() {
+    return "Alphabet" + Arrays.toString(letters);
+  }
+}
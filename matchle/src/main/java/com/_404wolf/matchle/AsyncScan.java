@@ -0,0 +1,271 @@
+package com._404wolf.matchle;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Non-blocking scans over a {@link WordIndex}. The ids of the index are split into chunks of {@link
+ * #CHUNK} words, which are filtered in parallel on an {@link Executor}. The index and the filter
+ * are supplied lazily, since building an index or compiling a filter can take longer than the scan
+ * itself and must not block the caller.
+ *
+ * <p>{@link #count(Supplier, Supplier, Executor)} completes a future with the number of matches,
+ * and stops scanning once the future is cancelled. The count prepares and runs on the executor but
+ * splits its chunks over the common fork-join pool. {@link #matches(Supplier, Supplier, Executor)}
+ * publishes the matches chunk by chunk as they are found, in no particular order. Every subscriber
+ * gets its own scan, prepared on the executor after it subscribes, which runs about {@link #BUFFER}
+ * words ahead of what the subscriber has consumed and stops when the subscription is cancelled.
+ */
+final class AsyncScan {
+  /** The number of ids a scanner claims at once. */
+  static final int CHUNK = 1 << 10;
+
+  /** The number of matches a subscription buffers before its scanners pause. */
+  static final int BUFFER = 4 * CHUNK;
+
+  private AsyncScan() {}
+
+  /**
+   * Counts the words of the index that pass the filter. The index and filter are obtained on the
+   * executor, and a failure to obtain them completes the future exceptionally.
+   *
+   * @param words the words to scan
+   * @param prepared the filter to count the words of
+   * @param executor the executor to scan on
+   * @return a future of the number of matching words, which stops the scan when cancelled
+   */
+  static CompletableFuture<Long> count(
+      Supplier<WordIndex> words, Supplier<Filter> prepared, Executor executor) {
+    CompletableFuture<Long> result = new CompletableFuture<>();
+    executor.execute(
+        () -> {
+          try {
+            WordIndex index = words.get();
+            Filter filter = prepared.get();
+            result.complete(
+                IntStream.range(0, chunks(index))
+                    .parallel()
+                    .mapToLong(chunk -> result.isDone() ? 0 : count(index, filter, chunk))
+                    .sum());
+          } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+          }
+        });
+    return result;
+  }
+
+  private static long count(WordIndex index, Filter filter, int chunk) {
+    return IntStream.range(chunk * CHUNK, Math.min(index.size(), (chunk + 1) * CHUNK))
+        .mapToObj(index::word)
+        .filter(filter::test)
+        .count();
+  }
+
+  /**
+   * Publishes the words of the index that pass the filter. A subscriber gets its subscription at
+   * once; the index and filter are then obtained on the executor, and a failure to obtain them is
+   * signalled through {@code onError}. Demand requested in the meantime is kept.
+   *
+   * @param words the words to scan
+   * @param prepared the filter to publish the words of
+   * @param executor the executor to scan on
+   * @return a publisher that starts a new scan for every subscriber
+   */
+  static Flow.Publisher<NGram> matches(
+      Supplier<WordIndex> words, Supplier<Filter> prepared, Executor executor) {
+    return subscriber -> {
+      Objects.requireNonNull(subscriber, "subscriber cannot be null");
+      Scan scan = new Scan(words, prepared, executor, subscriber);
+      subscriber.onSubscribe(scan);
+      executor.execute(scan::prepare);
+    };
+  }
+
+  private static int chunks(WordIndex index) {
+    return (index.size() + CHUNK - 1) / CHUNK;
+  }
+
+  /**
+   * The subscription of one subscriber. Until {@link #prepare()} has run, the number of chunks is
+   * unknown and no scanner starts. Scanners claim chunks from a shared counter and queue the
+   * matches; a single drain loop at a time hands them to the subscriber as demand allows.
+   */
+  private static final class Scan implements Flow.Subscription {
+    private static final int SCANNERS = Runtime.getRuntime().availableProcessors();
+
+    private final Supplier<WordIndex> words;
+    private final Supplier<Filter> prepared;
+    private final Executor executor;
+    private final Flow.Subscriber<? super NGram> subscriber;
+
+    private WordIndex index;
+    private Filter filter;
+
+    /**
+     * The number of chunks, or -1 until the scan is prepared. It is written after the index and
+     * filter, so reading it first publishes them.
+     */
+    private volatile int chunks = -1;
+
+    private final ConcurrentLinkedQueue<NGram> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final AtomicInteger claimed = new AtomicInteger();
+    private final AtomicInteger scanned = new AtomicInteger();
+    private final AtomicInteger scanners = new AtomicInteger();
+    private final AtomicLong demand = new AtomicLong();
+
+    /** The number of pending drain requests; only the caller that raises it from 0 drains. */
+    private final AtomicInteger drains = new AtomicInteger();
+
+    private final AtomicBoolean done = new AtomicBoolean();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    private Scan(
+        Supplier<WordIndex> words,
+        Supplier<Filter> prepared,
+        Executor executor,
+        Flow.Subscriber<? super NGram> subscriber) {
+      this.words = words;
+      this.prepared = prepared;
+      this.executor = executor;
+      this.subscriber = subscriber;
+    }
+
+    /** Obtains the index and filter, then starts scanning for the demand requested so far. */
+    private void prepare() {
+      try {
+        index = words.get();
+        filter = prepared.get();
+        chunks = chunks(index);
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      }
+      schedule();
+      drain();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        failure.compareAndSet(
+            null, new IllegalArgumentException("non-positive subscription request: " + n));
+      } else {
+        demand.getAndAccumulate(
+            n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        schedule();
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      done.set(true);
+      buffer.clear();
+    }
+
+    /** Starts scanners until there are enough, no chunks are left, or the buffer is full. */
+    private void schedule() {
+      while (needsScanner()) {
+        int running = scanners.get();
+        if (running < SCANNERS && scanners.compareAndSet(running, running + 1)) {
+          executor.execute(this::scan);
+        } else if (running >= SCANNERS) {
+          return;
+        }
+      }
+    }
+
+    private boolean needsScanner() {
+      int total = chunks;
+      return total >= 0 && !done.get() && claimed.get() < total && buffered.get() < BUFFER;
+    }
+
+    private void scan() {
+      try {
+        while (needsScanner()) {
+          int chunk = claimed.getAndIncrement();
+          if (chunk >= chunks) {
+            break;
+          }
+          scan(chunk);
+          drain();
+        }
+      } catch (RuntimeException e) {
+        failure.compareAndSet(null, e);
+      } finally {
+        scanners.decrementAndGet();
+      }
+      // a drain may have freed the buffer while this scanner was stopping
+      schedule();
+      drain();
+    }
+
+    private void scan(int chunk) {
+      for (int id = chunk * CHUNK, to = Math.min(index.size(), id + CHUNK); id < to; id++) {
+        NGram word = index.word(id);
+        if (filter.test(word)) {
+          buffer.add(word);
+          buffered.incrementAndGet();
+        }
+      }
+      scanned.incrementAndGet();
+    }
+
+    /** Delivers buffered matches while there is demand, then completes once everything is sent. */
+    void drain() {
+      if (drains.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      while (missed != 0) {
+        deliver();
+        missed = drains.addAndGet(-missed);
+      }
+    }
+
+    private void deliver() {
+      if (done.get()) {
+        return;
+      }
+      Throwable error = failure.get();
+      if (error != null) {
+        terminate(() -> subscriber.onError(error));
+        return;
+      }
+
+      // read before polling: once every chunk is scanned and the buffer is empty, nothing is left
+      int total = chunks;
+      boolean finished = total >= 0 && scanned.get() == total;
+      NGram word;
+      long emitted = 0;
+      while (emitted < demand.get() && !done.get() && (word = buffer.poll()) != null) {
+        buffered.decrementAndGet();
+        subscriber.onNext(word);
+        emitted++;
+      }
+      if (emitted > 0) {
+        demand.addAndGet(-emitted);
+        schedule();
+      }
+      if (finished && buffer.isEmpty()) {
+        terminate(subscriber::onComplete);
+      }
+    }
+
+    private void terminate(Runnable signal) {
+      if (done.compareAndSet(false, true)) {
+        buffer.clear();
+        signal.run();
+      }
+    }
+  }
+}
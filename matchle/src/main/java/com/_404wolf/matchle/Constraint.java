@@ -0,0 +1,166 @@
+package com._404wolf.matchle;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A structured description of a filter: the letters fixed at given positions, the letters required
+ * somewhere other than a given position, the letters that must be absent, the letters allowed at
+ * given positions and the letters required anywhere. Unlike a predicate, a constraint can be
+ * inspected, merged and compiled. This record is immutable.
+ *
+ * @param fixed the characters that must appear at their index
+ * @param elsewhere the characters that must appear at some index other than their own
+ * @param absent the characters that must not appear at all
+ * @param allowed for some indices, the characters one of which must appear there
+ * @param required the characters that must appear at some index
+ */
+record Constraint(
+    Set<IndexedCharacter> fixed,
+    Set<IndexedCharacter> elsewhere,
+    Set<Character> absent,
+    Map<Integer, Set<Character>> allowed,
+    Set<Character> required) {
+  /** A constraint that every n-gram satisfies. */
+  static final Constraint NONE = new Constraint(Set.of(), Set.of(), Set.of());
+
+  Constraint {
+    fixed = Set.copyOf(Objects.requireNonNull(fixed, "fixed cannot be null"));
+    elsewhere = Set.copyOf(Objects.requireNonNull(elsewhere, "elsewhere cannot be null"));
+    absent = Set.copyOf(Objects.requireNonNull(absent, "absent cannot be null"));
+    allowed =
+        Objects.requireNonNull(allowed, "allowed cannot be null").entrySet().stream()
+            .collect(
+                Collectors.toUnmodifiableMap(
+                    Map.Entry::getKey, entry -> Set.copyOf(entry.getValue())));
+    required = Set.copyOf(Objects.requireNonNull(required, "required cannot be null"));
+  }
+
+  /**
+   * Creates a constraint of fixed, elsewhere and absent characters, as feedback produces.
+   *
+   * @param fixed the characters that must appear at their index
+   * @param elsewhere the characters that must appear at some index other than their own
+   * @param absent the characters that must not appear at all
+   */
+  Constraint(Set<IndexedCharacter> fixed, Set<IndexedCharacter> elsewhere, Set<Character> absent) {
+    this(fixed, elsewhere, absent, Map.of(), Set.of());
+  }
+
+  /**
+   * Creates a constraint requiring a character at its index.
+   *
+   * @param c the character and its index
+   * @return a new Constraint
+   */
+  static Constraint fixed(IndexedCharacter c) {
+    return new Constraint(Set.of(c), Set.of(), Set.of());
+  }
+
+  /**
+   * Creates a constraint requiring a character at some index other than its own.
+   *
+   * @param c the character and the index it must not be counted at
+   * @return a new Constraint
+   */
+  static Constraint elsewhere(IndexedCharacter c) {
+    return new Constraint(Set.of(), Set.of(c), Set.of());
+  }
+
+  /**
+   * Creates a constraint requiring a character to be absent.
+   *
+   * @param c the character that must not appear
+   * @return a new Constraint
+   */
+  static Constraint absent(Character c) {
+    return new Constraint(Set.of(), Set.of(), Set.of(c));
+  }
+
+  /**
+   * Creates a constraint requiring one of the given characters at an index. An empty set of
+   * characters is satisfied by no n-gram.
+   *
+   * @param index the index of the character
+   * @param characters the characters allowed at the index
+   * @return a new Constraint
+   */
+  static Constraint allowed(int index, Set<Character> characters) {
+    return new Constraint(Set.of(), Set.of(), Set.of(), Map.of(index, characters), Set.of());
+  }
+
+  /**
+   * Creates a constraint requiring a character to appear at some index.
+   *
+   * @param c the character that must appear
+   * @return a new Constraint
+   */
+  static Constraint required(Character c) {
+    return new Constraint(Set.of(), Set.of(), Set.of(), Map.of(), Set.of(c));
+  }
+
+  /**
+   * Returns the constraint satisfied exactly by the n-grams that satisfy both constraints. The
+   * characters allowed at an index constrained by both are those allowed by both.
+   *
+   * @param other the constraint to combine with this one
+   * @return the conjunction of both constraints
+   */
+  Constraint and(Constraint other) {
+    Map<Integer, Set<Character>> merged = new HashMap<>(allowed);
+    other.allowed.forEach(
+        (index, characters) ->
+            merged.merge(
+                index,
+                characters,
+                (a, b) -> a.stream().filter(b::contains).collect(Collectors.toSet())));
+    return new Constraint(
+        union(fixed, other.fixed),
+        union(elsewhere, other.elsewhere),
+        union(absent, other.absent),
+        merged,
+        union(required, other.required));
+  }
+
+  /**
+   * Checks whether the n-gram satisfies this constraint.
+   *
+   * @param ngram the n-gram to check
+   * @return true if every part of the constraint holds, false otherwise
+   */
+  boolean test(NGram ngram) {
+    return fixed.stream().allMatch(ngram::matches)
+        && elsewhere.stream().allMatch(ngram::containsElsewhere)
+        && absent.stream().noneMatch(ngram::contains)
+        && allowed.entrySet().stream()
+            .allMatch(
+                entry ->
+                    entry.getKey() >= 0
+                        && entry.getKey() < ngram.size()
+                        && entry.getValue().contains(ngram.get(entry.getKey())))
+        && required.stream().allMatch(ngram::contains);
+  }
+
+  /**
+   * Returns every character the constraint mentions.
+   *
+   * @return the characters of the constraint
+   */
+  Set<Character> characters() {
+    return Stream.of(
+            Stream.concat(fixed.stream(), elsewhere.stream()).map(IndexedCharacter::character),
+            absent.stream(),
+            allowed.values().stream().flatMap(Set::stream),
+            required.stream())
+        .flatMap(s -> s)
+        .collect(Collectors.toSet());
+  }
+
+  private static <T> Set<T> union(Set<T> a, Set<T> b) {
+    return Stream.concat(a.stream(), b.stream()).collect(Collectors.toSet());
+  }
+}
@@ -1,27 +1,139 @@
 package com._404wolf.matchle;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * The {@code Corpus} class represents a collection of n-grams that form a dictionary for
  * match-related applications. It ensures that all words in the dictionary have the same length.
+ *
+ * <p>The n-grams are held in a {@link PersistentSet}, so {@link #with(NGram)} and {@link
+ * #without(NGram)} return new versions of a corpus in logarithmic time while sharing almost all of
+ * their structure with it. The content hash, the alphabet and the letter statistics are carried
+ * over to the new version in time proportional to the word size. The word index is not: a new
+ * version builds its own on first use, in time linear in its size. Every version is immutable and
+ * can be read without locking.
  */
 public final class Corpus implements Iterable<NGram> {
-  private final Set<NGram> corpus;
+  /** Scans over at least this many n-grams compile structured filters first. */
+  static final int COMPILE_THRESHOLD = 1 << 12;
+
+  /** The number of 64-bit lanes of a SHA-256 digest. */
+  private static final int DIGEST_LANES = 4;
+
+  private final PersistentSet<NGram> corpus;
+
+  /** The index over the corpus, built on first use and shared by everyone using the corpus. */
+  private volatile WordIndex index;
+
+  /**
+   * The lane-wise sum of the SHA-256 digests of the n-grams, computed on first use or carried over
+   * from the version this corpus was derived from.
+   */
+  private volatile long[] digest;
+
+  /**
+   * The alphabet of the corpus, computed on first use or carried over from the version this corpus
+   * was derived from. A carried alphabet may hold letters the corpus no longer uses, which still
+   * packs every n-gram of the corpus.
+   */
+  private volatile Alphabet alphabet;
+
+  /**
+   * The letter statistics of the corpus, built on first use or carried over incrementally from the
+   * version this corpus was derived from.
+   */
+  private volatile LetterStatistics statistics;
 
   public Set<NGram> getCorpus() {
     return corpus;
   }
 
-  private Corpus(Set<NGram> corpus) {
+  private Corpus(PersistentSet<NGram> corpus) {
+    this(corpus, null, null, null);
+  }
+
+  private Corpus(
+      PersistentSet<NGram> corpus, long[] digest, Alphabet alphabet, LetterStatistics statistics) {
     Objects.requireNonNull(corpus, "Corpus cannot be null");
 
-    this.corpus = Collections.unmodifiableSet(corpus);
+    this.corpus = corpus;
+    this.digest = digest;
+    this.alphabet = alphabet;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Returns a version of this corpus that also contains the given n-gram. This corpus is unchanged.
+   *
+   * @param ngram the n-gram to add
+   * @return a corpus with the n-gram, or this corpus if it already contains it
+   * @throws NullPointerException if the n-gram is null
+   * @throws IllegalArgumentException if the n-gram's size differs from the corpus's word size
+   */
+  public Corpus with(NGram ngram) {
+    Objects.requireNonNull(ngram, "nGram cannot be null");
+    Optional.of(ngram)
+        .filter(n -> corpus.isEmpty() || n.size() == wordSize())
+        .orElseThrow(() -> new IllegalArgumentException("n-gram size differs from corpus"));
+
+    return version(corpus.with(ngram), ngram, true);
+  }
+
+  /**
+   * Returns a version of this corpus that does not contain the given n-gram. This corpus is
+   * unchanged.
+   *
+   * @param ngram the n-gram to remove
+   * @return a corpus without the n-gram, or this corpus if it does not contain it
+   */
+  public Corpus without(NGram ngram) {
+    return version(corpus.without(ngram), ngram, false);
+  }
+
+  /**
+   * Derives a new version of this corpus with one n-gram added or removed. A content digest and
+   * letter statistics that were already computed are updated for that n-gram rather than
+   * recomputed, and the alphabet is kept unless the added n-gram has a letter outside it.
+   */
+  private Corpus version(PersistentSet<NGram> updated, NGram ngram, boolean added) {
+    if (updated == corpus) {
+      return this;
+    }
+
+    Alphabet kept = alphabet;
+    return new Corpus(
+        updated,
+        Optional.ofNullable(digest)
+            .map(sum -> combine(sum, digest(ngram), added ? 1 : -1))
+            .orElse(null),
+        kept == null || added && !covers(kept, ngram) ? null : kept,
+        Optional.ofNullable(statistics)
+            .map(LetterStatistics::copy)
+            .map(copy -> added ? copy.add(ngram) : copy.remove(ngram))
+            .orElse(null));
+  }
+
+  private static boolean covers(Alphabet alphabet, NGram ngram) {
+    return IntStream.range(0, ngram.size()).allMatch(i -> alphabet.code(ngram.get(i)) > 0);
   }
 
   /**
@@ -42,6 +154,117 @@ public final class Corpus implements Iterable<NGram> {
     return corpus.iterator().next().size();
   }
 
+  /**
+   * Returns the index over this corpus. The index is built on first use; since the corpus is
+   * immutable, a race between two first uses only costs a redundant build.
+   *
+   * @return the index over this corpus
+   */
+  WordIndex index() {
+    WordIndex built = index;
+    if (built == null) {
+      built = WordIndex.of(corpus);
+      index = built;
+    }
+    return built;
+  }
+
+  /**
+   * Returns a hash of the n-grams in this corpus, independent of the order they were added in. Two
+   * corpora have the same hash exactly when they hold the same n-grams, barring collisions. The
+   * hash is the sum of the SHA-256 digests of the n-grams, taken in four 64-bit lanes, so a derived
+   * version updates it with the digest of the one n-gram that changed.
+   *
+   * @return the hash as 64 hexadecimal digits
+   */
+  String contentHash() {
+    long[] computed = digest;
+    if (computed == null) {
+      computed =
+          corpus.stream()
+              .map(Corpus::digest)
+              .reduce(new long[DIGEST_LANES], (sum, term) -> combine(sum, term, 1));
+      digest = computed;
+    }
+    ByteBuffer bytes = ByteBuffer.allocate(DIGEST_LANES * Long.BYTES);
+    Arrays.stream(computed).forEach(bytes::putLong);
+    return HexFormat.of().formatHex(bytes.array());
+  }
+
+  /** Returns the SHA-256 digest of an n-gram's length and UTF-8 text, as four 64-bit lanes. */
+  private static long[] digest(NGram ngram) {
+    MessageDigest digest = sha256();
+    String word = ngram.toString();
+    digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(word.length()).array());
+    ByteBuffer hash = ByteBuffer.wrap(digest.digest(word.getBytes(StandardCharsets.UTF_8)));
+    return IntStream.range(0, DIGEST_LANES).mapToLong(i -> hash.getLong()).toArray();
+  }
+
+  /** Adds or subtracts a digest lane by lane, returning a new array. */
+  private static long[] combine(long[] sum, long[] term, int sign) {
+    return IntStream.range(0, DIGEST_LANES).mapToLong(i -> sum[i] + sign * term[i]).toArray();
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("every JVM supports SHA-256", e);
+    }
+  }
+
+  /**
+   * Returns the alphabet of this corpus, which numbers its characters densely for packed scans. It
+   * is computed on first use.
+   *
+   * @return the alphabet of this corpus
+   */
+  Alphabet alphabet() {
+    Alphabet computed = alphabet;
+    if (computed == null) {
+      computed = Alphabet.of(corpus);
+      alphabet = computed;
+    }
+    return computed;
+  }
+
+  /**
+   * Returns the letter statistics of this corpus. They are built on first use and kept, and
+   * versions derived with {@link #with(NGram)} or {@link #without(NGram)} update them
+   * incrementally.
+   *
+   * @return a copy of the letter statistics that the caller may update
+   */
+  LetterStatistics statistics() {
+    if (corpus.isEmpty()) {
+      return LetterStatistics.empty(0);
+    }
+
+    LetterStatistics built = statistics;
+    if (built == null) {
+      built = LetterStatistics.of(wordSize(), corpus);
+      statistics = built;
+    }
+    return built.copy();
+  }
+
+  /**
+   * Reports the heap this corpus retains, broken down into its n-grams, the structure holding them,
+   * its index and its cached letter statistics. The index and statistics only count once they have
+   * been built; nothing is built to compute the footprint.
+   *
+   * @return the footprint of this corpus
+   * @see Footprint#estimate(long, int)
+   */
+  public Footprint footprint() {
+    return new Footprint(
+        corpus.size(),
+        corpus.stream().mapToLong(NGram::footprint).sum(),
+        Footprint.object(3, 0) + corpus.footprint(),
+        Optional.ofNullable(index).map(WordIndex::footprint).orElse(0L),
+        Optional.ofNullable(statistics).map(LetterStatistics::footprint).orElse(0L));
+  }
+
   @Override
   public java.util.Iterator<NGram> iterator() {
     return corpus.iterator();
@@ -81,6 +304,13 @@ public final class Corpus implements Iterable<NGram> {
   public static final class Builder {
     private final Set<NGram> ngrams;
 
+    /**
+     * The alphabet of the n-grams, computed when a filter is compiled and reset by every add. A
+     * filtered builder inherits it, since filtering only removes letters and the alphabet still
+     * packs every remaining n-gram.
+     */
+    private Alphabet alphabet;
+
     private Builder(Set<NGram> ngrams) {
       this.ngrams = ngrams;
     }
@@ -96,13 +326,33 @@ public final class Corpus implements Iterable<NGram> {
      * @returns a builder with the n-grams that are consistent with the filter
      */
     public Builder filter(Filter filter) {
+      Events.FilterEvent event = new Events.FilterEvent();
+      event.begin();
       Set<NGram> filteredNgrams = new HashSet<>();
-      ngrams.stream().filter(filter::test).forEach(filteredNgrams::add);
+      ngrams.stream()
+          .filter(prepare(filter, ngrams, this::alphabet)::test)
+          .forEach(filteredNgrams::add);
+      event.finish(ngrams.size(), filteredNgrams.size(), filter);
 
-      return Builder.of(new Corpus(filteredNgrams));
+      Builder filtered = new Builder(filteredNgrams);
+      filtered.alphabet = alphabet;
+      return filtered;
     }
     ;
 
+    /**
+     * Returns the alphabet of the n-grams, computing it if no add has happened since it was last
+     * computed or inherited.
+     *
+     * @return an alphabet that packs every n-gram of the builder
+     */
+    Alphabet alphabet() {
+      if (alphabet == null) {
+        alphabet = Alphabet.of(ngrams);
+      }
+      return alphabet;
+    }
+
     /**
      * Adds an n-gram to the corpus.
      *
@@ -113,6 +363,7 @@ public final class Corpus implements Iterable<NGram> {
     public Builder add(NGram nGram) throws NullPointerException {
       Objects.requireNonNull(nGram, "nGram cannot be null");
       ngrams.add(nGram);
+      alphabet = null;
       return this;
     }
 
@@ -126,6 +377,7 @@ public final class Corpus implements Iterable<NGram> {
     public Builder addAll(Collection<NGram> nGrams) throws NullPointerException {
       Objects.requireNonNull(nGrams, "nGrams collection cannot be null");
       nGrams.stream().filter(Objects::nonNull).forEach(ngrams::add);
+      alphabet = null;
       return this;
     }
 
@@ -145,10 +397,15 @@ public final class Corpus implements Iterable<NGram> {
      * @return a copy of new Corpus, or null if not all n-grams are the same size.
      */
     public Corpus build() {
-      return Optional.of(ngrams)
-          .filter(list -> list.stream().map(NGram::size).distinct().count() <= 1)
-          .map(list -> new Corpus(new HashSet<>(list)))
-          .orElse(null);
+      Events.BuildEvent event = new Events.BuildEvent();
+      event.begin();
+      Corpus corpus =
+          Optional.of(ngrams)
+              .filter(list -> list.stream().map(NGram::size).distinct().count() <= 1)
+              .map(list -> new Corpus(PersistentSet.of(list)))
+              .orElse(null);
+      event.finish(ngrams.size(), corpus);
+      return corpus;
     }
 
     /**
@@ -173,6 +430,188 @@ public final class Corpus implements Iterable<NGram> {
    * @return The number of n-grams consistent with the filter.
    */
   public long size(Filter filter) {
-    return corpus.stream().filter(filter::test).count();
+    Events.SizeEvent event = new Events.SizeEvent();
+    event.begin();
+    long size = corpus.stream().filter(prepare(filter)::test).count();
+    event.finish(corpus.size(), size, filter);
+    return size;
+  }
+
+  /**
+   * Counts the n-grams in the corpus that pass the filter without blocking the caller. Building the
+   * index and preparing the filter, on first use, happen on the common fork-join pool along with
+   * the scan, which runs in parallel and stops early if the future is cancelled.
+   *
+   * @param filter the filter to count the n-grams of
+   * @return a future of the number of n-grams consistent with the filter
+   * @throws NullPointerException if the filter is null
+   */
+  public CompletableFuture<Long> sizeAsync(Filter filter) {
+    Objects.requireNonNull(filter, "filter cannot be null");
+    return AsyncScan.count(this::index, () -> prepare(filter), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Publishes the n-grams in the corpus that pass the filter as a parallel scan finds them, so the
+   * first matches arrive long before a large corpus has been scanned. Every subscriber gets its own
+   * scan, which pauses while the subscriber's buffer is full and stops when the subscription is
+   * cancelled. Matches arrive in no particular order. Nothing is built on the caller's thread: the
+   * index and the prepared filter are obtained on the common fork-join pool after a subscriber
+   * subscribes.
+   *
+   * <h2>Example</h2>
+   *
+   * <pre>
+   *
+   * corpus.matches(filter).subscribe(new Flow.Subscriber&lt;NGram&gt;() {
+   *   public void onSubscribe(Flow.Subscription subscription) { subscription.request(20); }
+   *   public void onNext(NGram match) { show(match); }
+   *   ...
+   * });
+   * </pre>
+   *
+   * @param filter the filter to publish the n-grams of
+   * @return a publisher of the n-grams consistent with the filter
+   * @throws NullPointerException if the filter is null
+   */
+  public Flow.Publisher<NGram> matches(Filter filter) {
+    Objects.requireNonNull(filter, "filter cannot be null");
+    return AsyncScan.matches(this::index, () -> prepare(filter), ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Counts the n-grams that pass each of many filters in a single pass over the corpus. Every block
+   * of words is decoded once and tested against all filters while it is in cache, which is much
+   * cheaper than calling {@link #size(Filter)} once per filter.
+   *
+   * @param filters the filters to count the n-grams of
+   * @param parallel whether to scan blocks of words in parallel
+   * @return the number of n-grams consistent with each filter, in the order of the filters
+   * @throws NullPointerException if the list or a filter is null
+   */
+  public long[] sizes(List<Filter> filters, boolean parallel) {
+    return scan(filters).counts(parallel);
+  }
+
+  /**
+   * Finds the n-grams that pass each of many filters in a single pass over the corpus. Bit i of a
+   * result stands for the n-gram {@link #word(int) word(i)}.
+   *
+   * @param filters the filters to find the n-grams of
+   * @param parallel whether to scan blocks of words in parallel
+   * @return the ids of the n-grams consistent with each filter, in the order of the filters
+   * @throws NullPointerException if the list or a filter is null
+   */
+  public List<BitSet> members(List<Filter> filters, boolean parallel) {
+    return scan(filters).members(parallel);
+  }
+
+  private SharedScan scan(List<Filter> filters) {
+    Objects.requireNonNull(filters, "filters cannot be null");
+    return SharedScan.of(index(), alphabet(), filters, corpus.size() >= COMPILE_THRESHOLD);
+  }
+
+  /**
+   * Returns the n-gram with the given id. Ids number the n-grams from 0 in the lexicographic order
+   * of their text.
+   *
+   * @param id the id of the n-gram
+   * @return the n-gram with the id
+   * @throws IndexOutOfBoundsException if the id is negative or not less than the corpus size
+   */
+  public NGram word(int id) {
+    return index().word(id);
+  }
+
+  /**
+   * Returns the n-grams in the corpus that match a query, in the lexicographic order of their text.
+   * The query is answered through the positional index, so a selective pattern such as {@code
+   * r?d?x} costs time close to the size of its result rather than of the corpus.
+   *
+   * @param query the query to match
+   * @return the matching n-grams
+   * @throws NullPointerException if the query is null
+   */
+  public List<NGram> find(Query query) {
+    WordIndex index = index();
+    return select(query).stream().mapToObj(index::word).collect(Collectors.toUnmodifiableList());
+  }
+
+  /**
+   * Counts the n-grams in the corpus that match a query, through the positional index as in {@link
+   * #find(Query)}.
+   *
+   * @param query the query to count the n-grams of
+   * @return the number of matching n-grams
+   * @throws NullPointerException if the query is null
+   */
+  public long size(Query query) {
+    return select(query).cardinality();
+  }
+
+  private BitSet select(Query query) {
+    Objects.requireNonNull(query, "query cannot be null");
+    return !corpus.isEmpty() && query.length().stream().allMatch(length -> length == wordSize())
+        ? index().select(query.constraint())
+        : new BitSet();
+  }
+
+  /**
+   * Estimates how many n-grams in the corpus pass the filter by sampling, which for large corpora
+   * is much cheaper than {@link #size(Filter)}. Sampling stops once the half width of the 95%
+   * confidence interval is within {@code targetError} of the estimate. Small corpora and small
+   * results are counted exactly. The index is never built for an estimate: samples are stratified
+   * by its positional index only when that already exists, and are drawn uniformly otherwise.
+   *
+   * @param filter the filter to count the n-grams of
+   * @param targetError the acceptable relative error, such as 0.05 for 5%
+   * @return an estimate of the number of n-grams consistent with the filter
+   * @throws NullPointerException if the filter is null
+   * @throws IllegalArgumentException if the target error is not positive
+   */
+  public Estimate estimateSize(Filter filter, double targetError) {
+    return estimateSize(filter, targetError, new SplittableRandom());
+  }
+
+  /**
+   * Estimates how many n-grams in the corpus pass the filter, drawing samples from the given
+   * source.
+   *
+   * @see #estimateSize(Filter, double)
+   */
+  Estimate estimateSize(Filter filter, double targetError, SplittableRandom random) {
+    Objects.requireNonNull(filter, "filter cannot be null");
+    Optional.of(targetError)
+        .filter(error -> error > 0)
+        .orElseThrow(() -> new IllegalArgumentException("target error must be positive"));
+
+    return corpus.size() < COMPILE_THRESHOLD
+        ? Estimate.exact(size(filter))
+        : Optional.ofNullable(index)
+            .map(built -> CountEstimator.estimate(built, prepare(filter), targetError, random))
+            .orElseGet(() -> CountEstimator.estimate(corpus, prepare(filter), targetError, random));
+  }
+
+  /** Prepares a filter for a scan over this corpus. */
+  private Filter prepare(Filter filter) {
+    return prepare(filter, corpus, this::alphabet);
+  }
+
+  /**
+   * Prepares a filter for a scan over the given n-grams, compiling it with {@link FilterCompiler}
+   * when the scan is large enough to pay for the compilation.
+   *
+   * @param filter the filter to prepare
+   * @param ngrams the n-grams that will be scanned
+   * @param alphabet the alphabet of the n-grams, only computed if the filter is compiled
+   * @return a filter equivalent to the given one
+   */
+  private static Filter prepare(Filter filter, Set<NGram> ngrams, Supplier<Alphabet> alphabet) {
+    return ngrams.size() < COMPILE_THRESHOLD
+        ? filter
+        : ngrams.stream()
+            .findAny()
+            .map(ngram -> FilterCompiler.compile(filter, alphabet.get(), ngram.size()))
+            .orElse(filter);
   }
 }
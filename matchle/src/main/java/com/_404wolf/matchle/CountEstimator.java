@@ -0,0 +1,213 @@
+package com._404wolf.matchle;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Estimates how many words pass a filter by sampling, stratified where a positional index exists.
+ *
+ * <p>When the words come from a {@link WordIndex} whose positional index is already built, they are
+ * split into strata by their character at the position with the most distinct characters. Without
+ * one, the words form a single stratum and are sampled uniformly: building the index only to
+ * stratify would cost far more than the scan the estimate is meant to avoid. Samples are drawn in
+ * rounds, allocated to the strata in proportion to their sizes, and the per-stratum pass rates are
+ * combined into an estimate with a 95% confidence interval. Sampling stops as soon as the relative
+ * error is within the target. If the result is small, or sampling has cost a fair share of a full
+ * scan, the count is computed exactly instead, scanning only the words with a fixed character of
+ * the filter when the positional index is built and the filter has one.
+ */
+final class CountEstimator {
+  /** Results whose upper bound falls below this are counted exactly. */
+  static final int SMALL_RESULT = 64;
+
+  /** The number of samples drawn in each round. */
+  static final int ROUND = 256;
+
+  /** Sampling stops once it has tested this fraction of the words. */
+  static final int BUDGET_DIVISOR = 8;
+
+  /** The normal quantile of a two-sided 95% confidence interval. */
+  private static final double Z = 1.96;
+
+  private final IntFunction<NGram> words;
+  private final int size;
+  private final Filter filter;
+  private final SplittableRandom random;
+  private final LongSupplier exact;
+
+  /** The ids of every stratum, or null if all ids form a single stratum. */
+  private final int[][] strata;
+
+  private final long[] draws;
+  private final long[] hits;
+  private long drawn;
+
+  private CountEstimator(
+      IntFunction<NGram> words,
+      int size,
+      int[][] strata,
+      Filter filter,
+      SplittableRandom random,
+      LongSupplier exact) {
+    this.words = words;
+    this.size = size;
+    this.strata = strata;
+    this.filter = filter;
+    this.random = random;
+    this.exact = exact;
+    this.draws = new long[strata == null ? 1 : strata.length];
+    this.hits = new long[draws.length];
+  }
+
+  /**
+   * Estimates how many words of the index pass the filter, stratifying by the positional index if
+   * it is already built.
+   *
+   * @param index the index of the words to count
+   * @param filter the filter to count the words of
+   * @param targetError the relative error at which sampling stops
+   * @param random the source of the samples
+   * @return an estimate of the count, exact if sampling did not pay off
+   */
+  static Estimate estimate(
+      WordIndex index, Filter filter, double targetError, SplittableRandom random) {
+    return index.size() == 0
+        ? Estimate.exact(0)
+        : new CountEstimator(
+                index::word,
+                index.size(),
+                index
+                    .positionalIfBuilt()
+                    .flatMap(groups -> strata(groups, index.size()))
+                    .orElse(null),
+                filter,
+                random,
+                () -> exact(index, filter))
+            .run(targetError);
+  }
+
+  /**
+   * Estimates how many of the given words pass the filter, sampling them uniformly.
+   *
+   * @param ngrams the words to count
+   * @param filter the filter to count the words of
+   * @param targetError the relative error at which sampling stops
+   * @param random the source of the samples
+   * @return an estimate of the count, exact if sampling did not pay off
+   */
+  static Estimate estimate(
+      Collection<NGram> ngrams, Filter filter, double targetError, SplittableRandom random) {
+    NGram[] words = ngrams.toArray(NGram[]::new);
+    return words.length == 0
+        ? Estimate.exact(0)
+        : new CountEstimator(
+                id -> words[id],
+                words.length,
+                null,
+                filter,
+                random,
+                () -> Arrays.stream(words).filter(filter::test).count())
+            .run(targetError);
+  }
+
+  /**
+   * Counts exactly how many words of the index pass the filter. If the positional index is built
+   * and the filter fixes a character at some position, only the words with that character there are
+   * tested.
+   *
+   * @param index the index of the words to count
+   * @param filter the filter to count the words of
+   * @return the number of passing words
+   */
+  static long exact(WordIndex index, Filter filter) {
+    return filter
+        .constraint()
+        .filter(constraint -> index.positionalIfBuilt().isPresent())
+        .flatMap(
+            constraint ->
+                constraint.fixed().stream()
+                    .map(index::postings)
+                    .min(Comparator.comparingInt(ids -> ids.length)))
+        .map(Arrays::stream)
+        .orElseGet(() -> IntStream.range(0, index.size()))
+        .filter(id -> filter.test(index.word(id)))
+        .count();
+  }
+
+  private Estimate run(double targetError) {
+    sample(1);
+    Estimate estimate = current();
+    while (estimate.relativeError() > targetError) {
+      if (estimate.upper() < SMALL_RESULT || drawn >= size / BUDGET_DIVISOR) {
+        return Estimate.exact(exact.getAsLong());
+      }
+      sample(0);
+      estimate = current();
+    }
+    return estimate;
+  }
+
+  /** Draws one round of samples, at least {@code minimum} from every stratum. */
+  private void sample(int minimum) {
+    for (int h = 0; h < draws.length; h++) {
+      double share = (double) ROUND * stratumSize(h) / size;
+      long count = Math.max(minimum, (long) share + (random.nextDouble() < share % 1 ? 1 : 0));
+      draw(h, count);
+    }
+  }
+
+  private void draw(int h, long count) {
+    for (long i = 0; i < count; i++) {
+      int id = strata == null ? random.nextInt(size) : strata[h][random.nextInt(strata[h].length)];
+      hits[h] += filter.test(words.apply(id)) ? 1 : 0;
+    }
+    draws[h] += count;
+    drawn += count;
+  }
+
+  private int stratumSize(int h) {
+    return strata == null ? size : strata[h].length;
+  }
+
+  /**
+   * Combines the per-stratum pass rates. The variance uses smoothed rates, so a stratum that has
+   * not passed or failed yet still contributes uncertainty.
+   */
+  private Estimate current() {
+    double value = 0;
+    double variance = 0;
+    for (int h = 0; h < draws.length; h++) {
+      double size = stratumSize(h);
+      double smoothed = (hits[h] + 0.5) / (draws[h] + 1);
+      value += draws[h] == 0 ? 0 : size * hits[h] / draws[h];
+      variance += draws[h] == 0 ? 0 : size * size * smoothed * (1 - smoothed) / draws[h];
+    }
+
+    double half = Z * Math.sqrt(variance);
+    return new Estimate(value, Math.max(0, value - half), Math.min(size, value + half), false);
+  }
+
+  /**
+   * Splits the ids by their character at the position with the most distinct characters, or returns
+   * empty if the words have different sizes.
+   */
+  private static Optional<int[][]> strata(List<Map<Character, int[]>> positional, int size) {
+    return positional.stream()
+        .max(Comparator.comparingInt(Map::size))
+        .map(
+            groups ->
+                groups.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .map(Map.Entry::getValue)
+                    .toArray(int[][]::new))
+        .filter(groups -> Arrays.stream(groups).mapToInt(ids -> ids.length).sum() == size);
+  }
+}
@@ -0,0 +1,31 @@
+package com._404wolf.matchle;
+
+/**
+ * An estimate of the number of n-grams in a corpus that pass a filter, with a 95% confidence
+ * interval. An exact count has an interval of width zero. This record is immutable.
+ *
+ * @param value the estimated count
+ * @param lower the lower bound of the confidence interval
+ * @param upper the upper bound of the confidence interval
+ * @param exact whether the count was computed exactly
+ */
+public record Estimate(double value, double lower, double upper, boolean exact) {
+  /**
+   * Creates an exact estimate.
+   *
+   * @param count the exact count
+   * @return an estimate whose interval is the count itself
+   */
+  static Estimate exact(long count) {
+    return new Estimate(count, count, count, true);
+  }
+
+  /**
+   * Returns the half width of the confidence interval relative to the estimated count.
+   *
+   * @return the relative error of the estimate, or 0 if it is exact
+   */
+  public double relativeError() {
+    return exact ? 0 : (upper - lower) / 2 / Math.max(value, 1);
+  }
+}
@@ -0,0 +1,133 @@
+package com._404wolf.matchle;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the work Matchle does on behalf of a request. All events are
+ * disabled by default, so an instrumented call only pays for an event object that escape analysis
+ * usually removes; enable them in a recording with, for example:
+ *
+ * <pre>
+ *
+ * java -XX:StartFlightRecording:settings=profile,+com._404wolf.matchle.Size#enabled=true ...
+ * </pre>
+ *
+ * <p>or with a custom {@code .jfc} file that enables the {@code com._404wolf.matchle} events. Every
+ * event is timed from {@code begin()} to its {@code finish} method, so its duration is the duration
+ * of the call.
+ */
+final class Events {
+  private Events() {}
+
+  /** Counts the conjuncts of a filter, as a measure of how complex it is. */
+  private static int complexity(Filter filter) {
+    return filter == null ? 0 : filter.conjuncts().size();
+  }
+
+  /** A key matched against a guess by {@link NGramMatcher#match()}. */
+  @Name("com._404wolf.matchle.Match")
+  @Label("Match")
+  @Category("Matchle")
+  @Description("A key matched against a guess to build a hint filter")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class MatchEvent extends Event {
+    @Label("Word Size")
+    int wordSize;
+
+    @Label("Filter Conjuncts")
+    int conjuncts;
+
+    void finish(NGram key, Filter result) {
+      if (shouldCommit()) {
+        wordSize = key.size();
+        conjuncts = complexity(result);
+        commit();
+      }
+    }
+  }
+
+  /** The matches of a filter counted by {@link Corpus#size(Filter)}. */
+  @Name("com._404wolf.matchle.Size")
+  @Label("Corpus Size")
+  @Category("Matchle")
+  @Description("The n-grams of a corpus that pass a filter counted")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class SizeEvent extends Event {
+    @Label("Corpus Size")
+    long corpusSize;
+
+    @Label("Result Size")
+    long resultSize;
+
+    @Label("Filter Conjuncts")
+    int conjuncts;
+
+    void finish(int corpusSize, long resultSize, Filter filter) {
+      if (shouldCommit()) {
+        this.corpusSize = corpusSize;
+        this.resultSize = resultSize;
+        conjuncts = complexity(filter);
+        commit();
+      }
+    }
+  }
+
+  /** A builder narrowed by {@link Corpus.Builder#filter(Filter)}. */
+  @Name("com._404wolf.matchle.Filter")
+  @Label("Builder Filter")
+  @Category("Matchle")
+  @Description("The n-grams of a corpus builder filtered into a new builder")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class FilterEvent extends Event {
+    @Label("Corpus Size")
+    long corpusSize;
+
+    @Label("Result Size")
+    long resultSize;
+
+    @Label("Filter Conjuncts")
+    int conjuncts;
+
+    void finish(int corpusSize, int resultSize, Filter filter) {
+      if (shouldCommit()) {
+        this.corpusSize = corpusSize;
+        this.resultSize = resultSize;
+        conjuncts = complexity(filter);
+        commit();
+      }
+    }
+  }
+
+  /** A corpus built by {@link Corpus.Builder#build()}. */
+  @Name("com._404wolf.matchle.Build")
+  @Label("Corpus Build")
+  @Category("Matchle")
+  @Description("A corpus built from the n-grams of a builder")
+  @Enabled(false)
+  @StackTrace(false)
+  static final class BuildEvent extends Event {
+    @Label("Corpus Size")
+    long corpusSize;
+
+    @Label("Consistent")
+    @Description("Whether all n-grams had the same size, so that a corpus was built")
+    boolean consistent;
+
+    void finish(int corpusSize, Corpus result) {
+      if (shouldCommit()) {
+        this.corpusSize = corpusSize;
+        consistent = result != null;
+        commit();
+      }
+    }
+  }
+}
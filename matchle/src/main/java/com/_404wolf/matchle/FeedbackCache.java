@@ -0,0 +1,199 @@
+package com._404wolf.matchle;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * A bounded, concurrent memo of feedback patterns, keyed by the packed key and guess, so that the
+ * same pair seen across games and threads is matched once.
+ *
+ * <p>The table is split into {@link #STRIPES} stripes, each with its own clock hand. A pair hashes
+ * to a stripe and to a bucket of {@link #WAYS} slots in it, and is only ever stored in that bucket,
+ * so a lookup is one hash and at most {@link #WAYS} probes. Slots hold immutable entries and are
+ * read and written without locks: a racing insert can at worst overwrite an entry that was just
+ * stored, which only costs a later miss. Eviction is CLOCK within the bucket: every hit sets the
+ * slot's referenced bit, and an insert sweeps the bucket from the stripe's hand, clearing set bits
+ * and replacing the first slot whose bit is clear.
+ *
+ * <p>Only n-grams that are packed under the cache's {@link Alphabet} are cached; other pairs are
+ * matched directly. Hits and misses are counted in {@link LongAdder}s, which keep a cell per
+ * contending thread, so counting does not serialize the lookups.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * FeedbackCache cache = FeedbackCache.of(Alphabet.LATIN, 1 &lt;&lt; 16);
+ * int pattern = cache.pattern(key, guess);
+ * </pre>
+ */
+final class FeedbackCache {
+  /** The number of independently swept stripes. */
+  static final int STRIPES = 16;
+
+  /** The number of slots in a bucket. */
+  static final int WAYS = 4;
+
+  /** The capacity of each shared cache. */
+  static final int SHARED_CAPACITY = 1 << 16;
+
+  private static final Map<Alphabet, FeedbackCache> SHARED = new ConcurrentHashMap<>();
+
+  private record Entry(long key, long guess, int pattern) {}
+
+  private final Alphabet alphabet;
+  private final AtomicReferenceArray<Entry> slots;
+
+  /**
+   * The referenced bit of every slot. The bits are hints for eviction, so plain racy writes are
+   * enough.
+   */
+  private final boolean[] referenced;
+
+  private final AtomicInteger[] hands;
+  private final int stripeShift;
+  private final int bucketMask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private FeedbackCache(Alphabet alphabet, int capacity) {
+    this.alphabet = alphabet;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.referenced = new boolean[capacity];
+    this.hands =
+        IntStream.range(0, STRIPES)
+            .mapToObj(i -> new AtomicInteger())
+            .toArray(AtomicInteger[]::new);
+    this.stripeShift = Integer.numberOfTrailingZeros(capacity / STRIPES);
+    this.bucketMask = capacity / STRIPES / WAYS - 1;
+  }
+
+  /**
+   * Creates a cache of pairs packed under the given alphabet.
+   *
+   * @param alphabet the alphabet the n-grams are packed with
+   * @param capacity the number of entries, rounded up to a power of two of at least {@code STRIPES
+   *     * WAYS}
+   * @return a new FeedbackCache
+   * @throws NullPointerException if the alphabet is null
+   * @throws IllegalArgumentException if the capacity is not positive or above {@code 2^30}
+   */
+  static FeedbackCache of(Alphabet alphabet, int capacity) {
+    Objects.requireNonNull(alphabet, "alphabet cannot be null");
+    int size =
+        Optional.of(capacity)
+            .filter(c -> c > 0 && c <= 1 << 30)
+            .map(c -> Math.max(STRIPES * WAYS, Integer.highestOneBit(c - 1) << 1))
+            .orElseThrow(() -> new IllegalArgumentException("capacity out of range: " + capacity));
+    return new FeedbackCache(alphabet, size);
+  }
+
+  /**
+   * Returns the cache shared by every caller that packs with the given alphabet, creating it on
+   * first use.
+   *
+   * @param alphabet the alphabet the n-grams are packed with
+   * @return the shared cache of the alphabet
+   */
+  static FeedbackCache shared(Alphabet alphabet) {
+    return SHARED.computeIfAbsent(alphabet, a -> of(a, SHARED_CAPACITY));
+  }
+
+  /**
+   * Returns the feedback pattern of a guess against a key, as {@link NGramMatcher#pattern(NGram,
+   * NGram)} computes it, from the cache if the pair has been seen.
+   *
+   * @param key the key to match against
+   * @param guess the guess to match
+   * @return the pattern code
+   * @throws NullPointerException if either argument is null
+   * @throws IllegalArgumentException if the n-grams have different lengths
+   */
+  int pattern(NGram key, NGram guess) {
+    Objects.requireNonNull(key, "key cannot be null");
+    Objects.requireNonNull(guess, "guess cannot be null");
+    if (!key.isPacked(alphabet) || !guess.isPacked(alphabet)) {
+      return NGramMatcher.computePattern(key, guess);
+    }
+
+    long packedKey = key.packed(alphabet);
+    long packedGuess = guess.packed(alphabet);
+    int hash = hash(packedKey, packedGuess);
+    int stripe = hash >>> (Integer.SIZE - Integer.numberOfTrailingZeros(STRIPES));
+    int bucket = (stripe << stripeShift) + (hash & bucketMask) * WAYS;
+
+    for (int way = 0; way < WAYS; way++) {
+      Entry entry = slots.get(bucket + way);
+      if (entry != null && entry.key() == packedKey && entry.guess() == packedGuess) {
+        if (!referenced[bucket + way]) {
+          referenced[bucket + way] = true;
+        }
+        hits.increment();
+        return entry.pattern();
+      }
+    }
+
+    misses.increment();
+    int pattern = NGramMatcher.computePattern(key, guess);
+    slots.set(victim(stripe, bucket), new Entry(packedKey, packedGuess, pattern));
+    return pattern;
+  }
+
+  /**
+   * Picks the slot of a bucket to replace: the first empty or unreferenced slot from the stripe's
+   * hand, clearing the referenced bits passed over. After one turn every bit is clear, so the sweep
+   * ends within two turns.
+   */
+  private int victim(int stripe, int bucket) {
+    int start = hands[stripe].getAndIncrement() & (WAYS - 1);
+    for (int step = 0; step < 2 * WAYS; step++) {
+      int slot = bucket + ((start + step) & (WAYS - 1));
+      if (slots.get(slot) == null || !referenced[slot]) {
+        return slot;
+      }
+      referenced[slot] = false;
+    }
+    return bucket + start;
+  }
+
+  private static int hash(long key, long guess) {
+    long h = key * 0x9E3779B97F4A7C15L ^ guess;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  /**
+   * Returns the number of entries the cache can hold.
+   *
+   * @return the capacity, a power of two
+   */
+  int capacity() {
+    return slots.length();
+  }
+
+  /**
+   * Returns the number of lookups answered from the cache.
+   *
+   * @return the number of hits
+   */
+  long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of cacheable lookups that had to match the pair.
+   *
+   * @return the number of misses
+   */
+  long misses() {
+    return misses.sum();
+  }
+}
@@ -1,8 +1,11 @@
 package com._404wolf.matchle;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Represents a predicate for filtering n-grams in a corpus. This class encapsulates filtering logic
@@ -10,11 +13,26 @@ import java.util.function.Predicate;
  *
  * <p>A Filter instance is immutable, and can be created using the static factory method {@code
  * from()} with a predicate, and includes methods for combining filters through logical operations.
+ *
+ * <p>Conjunctions are kept flat: combining filters with {@link #and(Optional)} collects their
+ * conjuncts into a single {@link AdaptiveConjunction}, which evaluates the cheapest and most
+ * selective conjuncts first. The conjunction is only built when the combined filter is first
+ * tested, so reducing many filters builds no throwaway intermediates, and it inherits what the
+ * combined conjunctions learned if they were tested themselves.
+ *
+ * <p>Filters built from a {@link Constraint} keep it alongside their predicate, and conjunctions of
+ * such filters keep the merged constraint, so that {@link FilterCompiler} can compile them.
  */
 public final class Filter {
   /** The predicate used for filtering NGrams */
   private final Predicate<NGram> predicate;
 
+  /** The conjuncts this filter was combined from, or empty if it was created from a predicate */
+  private final List<Filter> conjuncts;
+
+  /** The structured form of this filter, or null if it only has a predicate */
+  private final Constraint constraint;
+
   /** Filter that always evaluates to false for any NGram. */
   public static final Filter FALSE = Filter.from((n) -> false);
 
@@ -24,7 +42,20 @@ public final class Filter {
    * @param predicate the predicate to use for filtering
    */
   private Filter(Predicate<NGram> predicate) {
+    this(predicate, List.of(), null);
+  }
+
+  /**
+   * Private constructor to create a new Filter from the conjuncts it was combined from.
+   *
+   * @param predicate the predicate to use for filtering
+   * @param conjuncts the filters whose conjunction the predicate evaluates
+   * @param constraint the structured form of the filter, or null if there is none
+   */
+  private Filter(Predicate<NGram> predicate, List<Filter> conjuncts, Constraint constraint) {
     this.predicate = predicate;
+    this.conjuncts = conjuncts;
+    this.constraint = constraint;
   }
 
   /**
@@ -39,6 +70,32 @@ public final class Filter {
     return new Filter(predicate);
   }
 
+  /**
+   * Creates a new Filter that tests the given constraint.
+   *
+   * @param constraint the constraint to test
+   * @return a new Filter instance with the constraint as its structured form
+   * @throws NullPointerException if the constraint is null
+   */
+  static Filter of(Constraint constraint) {
+    Objects.requireNonNull(constraint);
+    return from(constraint::test, constraint);
+  }
+
+  /**
+   * Creates a new Filter from a predicate that is known to be equivalent to a constraint.
+   *
+   * @param predicate the predicate to use for filtering
+   * @param constraint the structured form of the predicate
+   * @return a new Filter instance
+   * @throws NullPointerException if either argument is null
+   */
+  static Filter from(Predicate<NGram> predicate, Constraint constraint) {
+    Objects.requireNonNull(predicate);
+    Objects.requireNonNull(constraint);
+    return new Filter(predicate, List.of(), constraint);
+  }
+
   public boolean test(NGram ngram) {
     return predicate.test(ngram);
   }
@@ -51,6 +108,73 @@ public final class Filter {
    * @return a new Filter representing the logical AND of both filters
    */
   public Filter and(Optional<Filter> other) {
-    return Filter.from(this.predicate.and(other.orElse(Filter.from((n) -> true)).predicate));
+    return other
+        .map(
+            o ->
+                new Filter(
+                    new Conjunction(
+                        Stream.concat(seeds(this), seeds(o))
+                            .collect(Collectors.toUnmodifiableList())),
+                    Stream.concat(conjuncts().stream(), o.conjuncts().stream())
+                        .collect(Collectors.toUnmodifiableList()),
+                    constraint != null && o.constraint != null
+                        ? constraint.and(o.constraint)
+                        : null))
+        .orElse(this);
+  }
+
+  /**
+   * Returns the structured form of this filter. A conjunction has one only if all of its conjuncts
+   * do.
+   *
+   * @return the constraint equivalent to this filter, or empty if there is none
+   */
+  Optional<Constraint> constraint() {
+    return Optional.ofNullable(constraint);
+  }
+
+  /**
+   * Returns the filters whose conjunction this filter evaluates. A filter created from a predicate
+   * is its own only conjunct.
+   *
+   * @return the conjuncts of this filter
+   */
+  List<Filter> conjuncts() {
+    return conjuncts.isEmpty() ? List.of(this) : conjuncts;
+  }
+
+  /**
+   * Returns the predicates a conjunction including this filter starts from: the built conjunction
+   * of a conjunction that was tested, with its statistics, or else the predicates of the conjuncts.
+   */
+  private static Stream<Predicate<NGram>> seeds(Filter filter) {
+    return filter.predicate instanceof Conjunction conjunction
+        ? conjunction.seeds().stream()
+        : Stream.of(filter.predicate);
+  }
+
+  /** Evaluates a conjunction through an {@link AdaptiveConjunction} built on first use. */
+  private static final class Conjunction implements Predicate<NGram> {
+    private final List<Predicate<NGram>> seeds;
+    private volatile AdaptiveConjunction adaptive;
+
+    private Conjunction(List<Predicate<NGram>> seeds) {
+      this.seeds = seeds;
+    }
+
+    @Override
+    public boolean test(NGram ngram) {
+      AdaptiveConjunction built = adaptive;
+      if (built == null) {
+        built = new AdaptiveConjunction(seeds);
+        adaptive = built;
+      }
+      return built.test(ngram);
+    }
+
+    private List<Predicate<NGram>> seeds() {
+      AdaptiveConjunction built = adaptive;
+      return built == null ? seeds : List.of(built);
+    }
   }
 }
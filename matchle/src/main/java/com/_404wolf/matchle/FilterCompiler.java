@@ -0,0 +1,509 @@
+package com._404wolf.matchle;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Compiles structured filters into generated classes that test the packed representation of an
+ * n-gram.
+ *
+ * <p>A {@link Constraint} of fixed, elsewhere, absent, allowed and required characters is turned
+ * into a single {@link PackedPredicate} whose {@code test} method is straight-line bytecode: every
+ * part of the constraint is reduced to a 64-bit word that is nonzero when the part fails, the words
+ * are OR-ed together, and the result is turned into a boolean with shifts instead of branches. The
+ * class is defined with {@link MethodHandles.Lookup#defineHiddenClass}, so it can be unloaded once
+ * it is no longer cached.
+ *
+ * <p>Characters are packed with the {@link Alphabet} of the corpus being scanned, so the lane width
+ * and the letter mask follow the characters the corpus actually uses, in any script.
+ *
+ * <p>The generated code depends only on the shape of a constraint: how many elsewhere characters it
+ * has, and which positions allow a set of characters and how many. Every letter code, lane and mask
+ * is read from a final field that the constructor fills from a {@code long[]}, so constraints with
+ * the same shape share one generated class, whatever their letters, alphabet or word size, and only
+ * a new instance is created for each. The classes are kept in a small LRU cache by shape, so the
+ * accumulated constraints of many games are compiled into a handful of classes.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * Filter filter = NGramMatcher.of(key, guess).match();
+ * Filter compiled = FilterCompiler.compile(filter, Alphabet.of(corpus), key.size());
+ * </pre>
+ */
+final class FilterCompiler {
+  /** The number of generated classes kept, evicting the least recently used beyond it. */
+  static final int MAX_CACHED = 256;
+
+  /** The constructors of the generated classes, taking the data array, by shape. */
+  private static final Map<Shape, MethodHandle> CACHE =
+      Collections.synchronizedMap(
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Shape, MethodHandle> eldest) {
+              return size() > MAX_CACHED;
+            }
+          });
+
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  /** The internal name of the generated classes; the JVM appends a unique suffix. */
+  private static final String CLASS_NAME = "com/_404wolf/matchle/CompiledFilter";
+
+  /** The local variable holding the scratch value of an elsewhere check. */
+  private static final int SCRATCH = 5;
+
+  /**
+   * The structure of a constraint that the generated code depends on.
+   *
+   * @param elsewhere the number of elsewhere characters
+   * @param allowed the number of allowed characters at each allowed position, in the order the
+   *     positions are generated
+   */
+  private record Shape(int elsewhere, List<Integer> allowed) {
+    private static Shape of(Constraint constraint) {
+      return new Shape(
+          constraint.elsewhere().size(),
+          constraint.allowed().values().stream().map(Set::size).collect(Collectors.toList()));
+    }
+  }
+
+  private FilterCompiler() {}
+
+  /**
+   * Compiles a filter for n-grams of the given size and alphabet. N-grams of other sizes, or
+   * without a packed representation, are still accepted and fall back to the interpreted
+   * constraint.
+   *
+   * @param filter the filter to compile
+   * @param alphabet the alphabet of the n-grams the filter will mostly be tested against
+   * @param wordSize the size of the n-grams the filter will mostly be tested against
+   * @return a compiled filter, or the given filter if it has no compilable constraint
+   */
+  static Filter compile(Filter filter, Alphabet alphabet, int wordSize) {
+    return filter
+        .constraint()
+        .filter(constraint -> isCompilable(constraint, alphabet, wordSize))
+        .map(constraint -> compiled(constraint, alphabet, wordSize))
+        .orElse(filter);
+  }
+
+  /**
+   * Checks whether a constraint can be compiled for n-grams of the given size: the size must fit in
+   * the packed representation, every fixed, elsewhere, allowed or required character must be in the
+   * alphabet, every fixed and elsewhere index must be in range, every fixed position must hold a
+   * single character, and every allowed position must be in range. Absent characters outside the
+   * alphabet can never occur in a packed word, so they are simply left out of the compiled check.
+   *
+   * @param constraint the constraint to check
+   * @param alphabet the alphabet of the n-grams
+   * @param wordSize the size of the n-grams
+   * @return true if the constraint can be compiled, false otherwise
+   */
+  static boolean isCompilable(Constraint constraint, Alphabet alphabet, int wordSize) {
+    return wordSize > 0
+        && wordSize <= alphabet.maxPackedSize()
+        && Stream.of(
+                constraint.fixed().stream().map(IndexedCharacter::character),
+                constraint.elsewhere().stream().map(IndexedCharacter::character),
+                constraint.allowed().values().stream().flatMap(Set::stream),
+                constraint.required().stream())
+            .flatMap(characters -> characters)
+            .allMatch(c -> alphabet.code(c) > 0)
+        && Stream.concat(constraint.fixed().stream(), constraint.elsewhere().stream())
+            .allMatch(c -> c.index() >= 0 && c.index() < wordSize)
+        && constraint.fixed().stream().map(IndexedCharacter::index).distinct().count()
+            == constraint.fixed().size()
+        && constraint.allowed().keySet().stream().allMatch(i -> i >= 0 && i < wordSize);
+  }
+
+  /**
+   * Returns a compiled predicate for a constraint: an instance of the generated class of its shape,
+   * holding its letters and masks. The class is generated and cached if needed.
+   *
+   * @param constraint a compilable constraint
+   * @param alphabet the alphabet of the n-grams
+   * @param wordSize the size of the n-grams
+   * @return the compiled predicate
+   */
+  static PackedPredicate predicate(Constraint constraint, Alphabet alphabet, int wordSize) {
+    Generator generator = new Generator(constraint, alphabet, wordSize);
+    byte[] bytes = generator.generate();
+    MethodHandle constructor = CACHE.computeIfAbsent(Shape.of(constraint), s -> define(bytes));
+    try {
+      return (PackedPredicate) constructor.invoke(generator.data());
+    } catch (Throwable e) {
+      throw new IllegalStateException("could not instantiate compiled filter", e);
+    }
+  }
+
+  private static Filter compiled(Constraint constraint, Alphabet alphabet, int wordSize) {
+    PackedPredicate predicate = predicate(constraint, alphabet, wordSize);
+    return Filter.from(
+        ngram ->
+            ngram.size() == wordSize && ngram.isPacked(alphabet)
+                ? predicate.test(ngram.packed(alphabet), ngram.letters(alphabet))
+                : constraint.test(ngram),
+        constraint);
+  }
+
+  private static MethodHandle define(byte[] bytes) {
+    try {
+      Class<?> compiled = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+      return LOOKUP.findConstructor(compiled, MethodType.methodType(void.class, long[].class));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      throw new IllegalStateException("could not define compiled filter", e);
+    }
+  }
+
+  /**
+   * Generates the class file of a {@link PackedPredicate} for the shape of a constraint, together
+   * with the data its constructor takes. Every value that depends on the letters, the alphabet or
+   * the word size goes through {@link #value(long)}, which emits a load of the next data field, so
+   * the code itself only depends on the shape. The packed word is local 1, the letter mask local 3,
+   * and the failure accumulator lives on the operand stack.
+   */
+  private static final class Generator {
+    private final Constraint constraint;
+    private final Alphabet alphabet;
+    private final int wordSize;
+    private final Assembler asm = new Assembler();
+    private final List<Long> data = new ArrayList<>();
+
+    private Generator(Constraint constraint, Alphabet alphabet, int wordSize) {
+      this.constraint = constraint;
+      this.alphabet = alphabet;
+      this.wordSize = wordSize;
+    }
+
+    private long[] data() {
+      return data.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /** Emits a load of a value from the data, in the order the constructor stores it. */
+    private Assembler value(long value) {
+      asm.field(data.size());
+      data.add(value);
+      return asm;
+    }
+
+    private byte[] generate() {
+      asm.op(Assembler.LCONST_0);
+
+      asm.op(Assembler.LLOAD_3);
+      value(alphabet.mask(constraint.absent())).op(Assembler.LAND);
+      asm.op(Assembler.LOR);
+
+      long required = alphabet.mask(constraint.required());
+      asm.op(Assembler.LLOAD_3);
+      value(required).op(Assembler.LAND);
+      value(required).op(Assembler.LXOR).op(Assembler.LOR);
+
+      asm.op(Assembler.LLOAD_1);
+      value(fixedValue()).op(Assembler.LXOR);
+      value(fixedMask()).op(Assembler.LAND).op(Assembler.LOR);
+
+      constraint.elsewhere().forEach(this::elsewhere);
+      constraint.allowed().forEach(this::allowed);
+
+      nonZero(asm).op(Assembler.LCONST_1).op(Assembler.LXOR).op(Assembler.L2I);
+      asm.op(Assembler.IRETURN);
+      return asm.toClassFile(data.size());
+    }
+
+    /**
+     * Emits a check that the character occurs at some position other than its index. The packed
+     * word is XOR-ed with the character broadcast to every lane, so matching lanes become zero; the
+     * own lane and the unused lanes are forced nonzero, and the classic zero-lane test finds any
+     * match.
+     */
+    private void elsewhere(IndexedCharacter c) {
+      long ones = ones();
+      long forced = lane(c.index()) | ~(ones * alphabet.laneMask());
+
+      asm.op(Assembler.LLOAD_1);
+      value(ones * alphabet.code(c.character())).op(Assembler.LXOR);
+      value(forced).op(Assembler.LOR).local(Assembler.LSTORE, SCRATCH);
+
+      asm.local(Assembler.LLOAD, SCRATCH);
+      value(ones).op(Assembler.LSUB);
+      asm.local(Assembler.LLOAD, SCRATCH).constant(-1L).op(Assembler.LXOR).op(Assembler.LAND);
+      value(ones << (alphabet.bits() - 1)).op(Assembler.LAND);
+
+      nonZero(asm).op(Assembler.LCONST_1).op(Assembler.LXOR).op(Assembler.LOR);
+    }
+
+    /**
+     * Emits a check that the lane of an index holds one of the allowed characters. Starting from
+     * one, the lane is compared with every allowed character and the running value is AND-ed with
+     * the comparison, so it stays one only if no character matched.
+     */
+    private void allowed(int index, Set<Character> characters) {
+      long lane = lane(index);
+      int shift = index * alphabet.bits();
+
+      asm.op(Assembler.LCONST_1);
+      for (char c : characters) {
+        asm.op(Assembler.LLOAD_1);
+        value(lane).op(Assembler.LAND);
+        value((long) alphabet.code(c) << shift).op(Assembler.LXOR);
+        nonZero(asm).op(Assembler.LAND);
+      }
+      asm.op(Assembler.LOR);
+    }
+
+    private long fixedValue() {
+      return constraint.fixed().stream()
+          .mapToLong(c -> (long) alphabet.code(c.character()) << (c.index() * alphabet.bits()))
+          .reduce(0L, (a, b) -> a | b);
+    }
+
+    private long fixedMask() {
+      return constraint.fixed().stream()
+          .mapToLong(c -> lane(c.index()))
+          .reduce(0L, (a, b) -> a | b);
+    }
+
+    private long lane(int index) {
+      return index < alphabet.maxPackedSize()
+          ? alphabet.laneMask() << (index * alphabet.bits())
+          : 0L;
+    }
+
+    private long ones() {
+      return LongStream.range(0, wordSize)
+          .map(i -> 1L << (i * alphabet.bits()))
+          .reduce(0L, (a, b) -> a | b);
+    }
+  }
+
+  /** Emits {@code (x | -x) >>> 63}, which is 1 if the long on the stack is nonzero and 0 if not. */
+  private static Assembler nonZero(Assembler asm) {
+    asm.op(Assembler.DUP2).op(Assembler.LNEG).op(Assembler.LOR);
+    return asm.op(Assembler.BIPUSH).op(Long.SIZE - 1).op(Assembler.LUSHR);
+  }
+
+  /**
+   * A minimal class file writer for a final class implementing {@link PackedPredicate}, with final
+   * {@code long} data fields, a constructor that fills them from a {@code long[]}, and a
+   * branch-free {@code test} method. Without branches the methods need no stack map frames, so the
+   * class file targets Java 8.
+   */
+  private static final class Assembler {
+    static final int LCONST_0 = 0x09;
+    static final int LCONST_1 = 0x0a;
+    static final int BIPUSH = 0x10;
+    static final int LDC2_W = 0x14;
+    static final int LLOAD = 0x16;
+    static final int LLOAD_1 = 0x1f;
+    static final int LLOAD_3 = 0x21;
+    static final int SIPUSH = 0x11;
+    static final int ALOAD_0 = 0x2a;
+    static final int ALOAD_1 = 0x2b;
+    static final int LALOAD = 0x2f;
+    static final int LSTORE = 0x37;
+    static final int DUP2 = 0x5c;
+    static final int LSUB = 0x65;
+    static final int LNEG = 0x75;
+    static final int LUSHR = 0x7d;
+    static final int LAND = 0x7f;
+    static final int LOR = 0x81;
+    static final int LXOR = 0x83;
+    static final int L2I = 0x88;
+    static final int IRETURN = 0xac;
+    static final int RETURN = 0xb1;
+    static final int GETFIELD = 0xb4;
+    static final int PUTFIELD = 0xb5;
+    static final int INVOKESPECIAL = 0xb7;
+
+    private static final int MAX_STACK = 10;
+    private static final int MAX_LOCALS = 7;
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final Map<Object, Integer> entries = new LinkedHashMap<>();
+    private int nextEntry = 1;
+
+    Assembler op(int opcode) {
+      code.write(opcode);
+      return this;
+    }
+
+    Assembler local(int opcode, int index) {
+      return op(opcode).op(index);
+    }
+
+    Assembler constant(long value) {
+      int index = entry(value, 2, out -> out.writeLong(value), 5);
+      return op(LDC2_W).op(index >> 8).op(index & 0xff);
+    }
+
+    /** Emits a load of the data field with the given number onto the stack. */
+    Assembler field(int number) {
+      int index = fieldEntry(number);
+      return op(ALOAD_0).op(GETFIELD).op(index >> 8).op(index & 0xff);
+    }
+
+    private int fieldEntry(int number) {
+      return memberEntry(9, classEntry(CLASS_NAME), utf8("d" + number), utf8("J"));
+    }
+
+    byte[] toClassFile(int fields) {
+      int thisClass = classEntry(CLASS_NAME);
+      int superClass = classEntry("java/lang/Object");
+      int iface = classEntry(PackedPredicate.class.getName().replace('.', '/'));
+      int init = utf8("<init>");
+      int voidDescriptor = utf8("()V");
+      int dataDescriptor = utf8("([J)V");
+      int superInit = memberEntry(10, superClass, init, voidDescriptor);
+      int test = utf8("test");
+      int testDescriptor = utf8("(JJ)Z");
+      int codeName = utf8("Code");
+      int longDescriptor = utf8("J");
+
+      ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+      constructor.writeBytes(
+          new byte[] {ALOAD_0, (byte) INVOKESPECIAL, (byte) (superInit >> 8), (byte) superInit});
+      for (int i = 0; i < fields; i++) {
+        int field = fieldEntry(i);
+        constructor.writeBytes(
+            new byte[] {
+              ALOAD_0,
+              ALOAD_1,
+              SIPUSH,
+              (byte) (i >> 8),
+              (byte) i,
+              LALOAD,
+              (byte) PUTFIELD,
+              (byte) (field >> 8),
+              (byte) field
+            });
+      }
+      constructor.write(RETURN);
+
+      return write(
+          out -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(52);
+            out.writeShort(nextEntry);
+            pool.writeTo(out);
+            out.writeShort(0x0030); // ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(iface);
+            out.writeShort(fields);
+            for (int i = 0; i < fields; i++) {
+              out.writeShort(0x0012); // ACC_PRIVATE | ACC_FINAL
+              out.writeShort(utf8("d" + i));
+              out.writeShort(longDescriptor);
+              out.writeShort(0);
+            }
+            out.writeShort(2);
+            method(out, init, dataDescriptor, codeName, 4, 2, constructor.toByteArray());
+            method(out, test, testDescriptor, codeName, MAX_STACK, MAX_LOCALS, code.toByteArray());
+            out.writeShort(0);
+          });
+    }
+
+    private static void method(
+        DataOutputStream out,
+        int name,
+        int descriptor,
+        int codeName,
+        int stack,
+        int locals,
+        byte[] body)
+        throws IOException {
+      out.writeShort(0x0001); // ACC_PUBLIC
+      out.writeShort(name);
+      out.writeShort(descriptor);
+      out.writeShort(1);
+      out.writeShort(codeName);
+      out.writeInt(12 + body.length);
+      out.writeShort(stack);
+      out.writeShort(locals);
+      out.writeInt(body.length);
+      out.write(body);
+      out.writeShort(0);
+      out.writeShort(0);
+    }
+
+    private int utf8(String value) {
+      return entry("utf8:" + value, 1, out -> out.writeUTF(value), 1);
+    }
+
+    private int classEntry(String internalName) {
+      int name = utf8(internalName);
+      return entry("class:" + internalName, 1, out -> out.writeShort(name), 7);
+    }
+
+    private int memberEntry(int tag, int owner, int name, int descriptor) {
+      int nameAndType =
+          entry(
+              "nat:" + name + ":" + descriptor,
+              1,
+              out -> {
+                out.writeShort(name);
+                out.writeShort(descriptor);
+              },
+              12);
+      return entry(
+          "member:" + tag + ":" + owner + ":" + nameAndType,
+          1,
+          out -> {
+            out.writeShort(owner);
+            out.writeShort(nameAndType);
+          },
+          tag);
+    }
+
+    /** Adds a constant pool entry unless an equal one exists, returning its index. */
+    private int entry(Object key, int slots, Body body, int tag) {
+      return entries.computeIfAbsent(
+          key,
+          k -> {
+            int index = nextEntry;
+            nextEntry += slots;
+            pool.writeBytes(write(out -> writeTagged(out, tag, body)));
+            return index;
+          });
+    }
+
+    private static void writeTagged(DataOutputStream out, int tag, Body body) throws IOException {
+      out.writeByte(tag);
+      body.write(out);
+    }
+
+    private static byte[] write(Body body) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DataOutputStream out = new DataOutputStream(bytes)) {
+        body.write(out);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Body {
+      void write(DataOutputStream out) throws IOException;
+    }
+  }
+}
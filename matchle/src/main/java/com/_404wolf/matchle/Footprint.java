@@ -0,0 +1,154 @@
+package com._404wolf.matchle;
+
+import java.util.Optional;
+
+/**
+ * The estimated heap footprint of a {@link Corpus}, in bytes, broken down by what holds it. This
+ * record is immutable.
+ *
+ * <p>Sizes are computed from the object layout of a 64-bit HotSpot JVM with compressed object
+ * pointers and class pointers, the default for heaps under 32 GB: 12-byte object headers, 16-byte
+ * array headers, 4-byte references and 8-byte alignment. They count what a corpus would retain if
+ * it were the only user of its n-grams; versions derived with {@link Corpus#with(NGram)} share
+ * their n-grams and most of their storage, so adding their footprints overcounts. Caches shared by
+ * all corpora, such as compiled filters, are not included.
+ *
+ * @param count the number of n-grams
+ * @param ngrams the bytes of the n-gram objects themselves
+ * @param storage the bytes of the structure holding the n-grams
+ * @param index the bytes of the word index, or 0 if it has not been built
+ * @param cache the bytes of the cached letter statistics, or 0 if they have not been built
+ */
+public record Footprint(long count, long ngrams, long storage, long index, long cache) {
+  static final int HEADER = 12;
+  static final int ARRAY_HEADER = 16;
+  static final int REFERENCE = 4;
+  static final int ALIGNMENT = 8;
+
+  /** The bytes of a {@code HashMap} node: the hash and the key, value and next references. */
+  private static final long HASH_NODE = object(3, Integer.BYTES);
+
+  /** The bytes of the packing an n-gram caches: the alphabet reference and two longs. */
+  static final long PACKING = object(1, 2 * Long.BYTES);
+
+  /** The largest character value whose boxed {@link Character} is cached by the JVM. */
+  private static final char CACHED_CHARACTER = 127;
+
+  /** The largest int value whose boxed {@link Integer} is cached by the JVM. */
+  private static final int CACHED_INTEGER = 127;
+
+  /**
+   * Estimates the footprint of a corpus of ASCII words before it is loaded, with its index and
+   * letter statistics built. The estimate assumes that every letter of a word is distinct, which
+   * slightly overestimates the n-grams, and that the words hash uniformly.
+   *
+   * @param words the number of distinct words in the dictionary
+   * @param wordSize the size of the words
+   * @return the expected footprint of the loaded corpus
+   * @throws IllegalArgumentException if either argument is negative
+   */
+  public static Footprint estimate(long words, int wordSize) {
+    Optional.of(words)
+        .filter(n -> n >= 0 && wordSize >= 0)
+        .orElseThrow(() -> new IllegalArgumentException("sizes cannot be negative"));
+
+    return new Footprint(
+        words,
+        words * (ngram(wordSize, wordSize) + PACKING),
+        object(3, 0) + PersistentSet.estimate(words),
+        words == 0 ? 0 : WordIndex.estimate(words, wordSize),
+        words == 0 ? 0 : LetterStatistics.estimate(Math.min(26, words * wordSize), wordSize));
+  }
+
+  /**
+   * Returns the total footprint.
+   *
+   * @return the sum of all parts, in bytes
+   */
+  public long total() {
+    return ngrams + storage + index + cache;
+  }
+
+  /**
+   * Returns the average footprint per n-gram, including its share of the storage, index and cache.
+   *
+   * @return the total divided by the number of n-grams, or 0 for an empty corpus
+   */
+  public double perWord() {
+    return count == 0 ? 0 : (double) total() / count;
+  }
+
+  /** Returns the bytes of an object with the given number of references and primitive bytes. */
+  static long object(int references, int primitiveBytes) {
+    return align(HEADER + (long) references * REFERENCE + primitiveBytes);
+  }
+
+  /** Returns the bytes of an array of the given length and element size. */
+  static long array(long length, int elementBytes) {
+    return align(ARRAY_HEADER + length * elementBytes);
+  }
+
+  /**
+   * Returns the bytes of a {@code HashMap} filled by successive puts, excluding keys and values.
+   */
+  static long hashMap(long entries) {
+    return hashMap(entries, capacity(entries));
+  }
+
+  /** Returns the bytes of a {@code HashMap} with the given table capacity. */
+  static long hashMap(long entries, long capacity) {
+    return object(4, 4 * Integer.BYTES)
+        + (entries == 0 ? 0 : array(capacity, REFERENCE))
+        + entries * HASH_NODE;
+  }
+
+  /** Returns the bytes of a map built by {@code Map.copyOf}, excluding keys and values. */
+  static long immutableMap(long entries) {
+    if (entries < 2) {
+      return entries == 0 ? 0 : object(2, 0);
+    }
+    return object(1, Integer.BYTES) + array(4 * entries, REFERENCE);
+  }
+
+  /** Returns the bytes of the boxed ids 0 to n - 1 that the JVM does not cache. */
+  static long boxedIntegers(long n) {
+    return Math.max(0, n - CACHED_INTEGER - 1) * object(0, Integer.BYTES);
+  }
+
+  /** Returns the bytes of a boxed character, or 0 if the JVM caches it. */
+  static long boxed(char c) {
+    return c <= CACHED_CHARACTER ? 0 : object(0, Character.BYTES);
+  }
+
+  /**
+   * Returns the bytes of an n-gram: the object and its unmodifiable character list and set, but not
+   * its packing or the boxed characters the JVM does not cache.
+   */
+  static long ngram(int size, int distinct) {
+    return object(3, 0)
+        + object(2, 0)
+        + object(1, 2 * Integer.BYTES)
+        + array(size, REFERENCE)
+        + object(1, 0)
+        + object(1, 0)
+        + hashMap(distinct, tableSize(Math.max((long) (distinct / 0.75f) + 1, 16)));
+  }
+
+  /** Returns the table capacity of a {@code HashMap} after the given number of puts. */
+  private static long capacity(long entries) {
+    long capacity = 16;
+    while (capacity * 3 / 4 < entries) {
+      capacity *= 2;
+    }
+    return capacity;
+  }
+
+  /** Returns the table capacity of a {@code HashMap} created with the given initial capacity. */
+  private static long tableSize(long initialCapacity) {
+    return Long.highestOneBit(Math.max(1, initialCapacity - 1)) << 1;
+  }
+
+  private static long align(long bytes) {
+    return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+}
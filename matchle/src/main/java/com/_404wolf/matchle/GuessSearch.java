@@ -0,0 +1,210 @@
+package com._404wolf.matchle;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the k guesses that split the candidate answers into the most distinct feedback patterns.
+ *
+ * <p>Scoring a guess means matching it against every candidate, so the search first bounds every
+ * guess from the candidates' {@link LetterStatistics}, which costs time linear in the word size.
+ * Guesses are then scored in order of decreasing bound by parallel workers. Each worker keeps its
+ * own best k, and publishes its k-th best score to a shared threshold with a lock-free maximum.
+ * Since the threshold never exceeds the true k-th best score, a guess whose bound is below it
+ * cannot be in the result; and since the bounds are sorted, a worker that claims such a guess
+ * stops. The result equals the exhaustive ranking.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * List&lt;RankedGuess&gt; best = GuessSearch.top(guesses, answers, 10);
+ * </pre>
+ */
+public final class GuessSearch {
+  private final List<NGram> candidates;
+  private final Set<NGram> answers;
+  private final int k;
+
+  /** The guesses sorted by decreasing bound, with the bound of each. */
+  private final NGram[] guesses;
+
+  private final int[] bounds;
+
+  /** The next position in {@link #guesses} to be claimed by a worker. */
+  private final AtomicInteger next = new AtomicInteger();
+
+  /** The best k-th best score any worker has found so far. */
+  private final AtomicLong threshold = new AtomicLong();
+
+  /** The number of guesses that were fully scored, for tests. */
+  private final AtomicInteger scored = new AtomicInteger();
+
+  private GuessSearch(
+      List<NGram> guesses, List<NGram> candidates, LetterStatistics statistics, int k) {
+    this.candidates = candidates;
+    this.answers = new HashSet<>(candidates);
+    this.k = k;
+
+    Map<NGram, Integer> bounded = new HashMap<>();
+    guesses.forEach(guess -> bounded.put(guess, bound(guess, statistics, candidates.size())));
+    this.guesses =
+        bounded.keySet().stream()
+            .sorted(
+                Comparator.comparing((NGram guess) -> bounded.get(guess))
+                    .reversed()
+                    .thenComparing(NGram::toString))
+            .toArray(NGram[]::new);
+    this.bounds =
+        IntStream.range(0, this.guesses.length).map(i -> bounded.get(this.guesses[i])).toArray();
+  }
+
+  /**
+   * Finds the k guesses with the most distinct feedback patterns over the candidate answers. Ties
+   * are broken in favor of the candidates themselves, then by the guess's text.
+   *
+   * @param guesses the words that may be guessed
+   * @param candidates the words that may be the answer
+   * @param k the number of guesses to find
+   * @return up to k guesses, best first
+   * @throws NullPointerException if either corpus is null
+   * @throws IllegalArgumentException if k is not positive
+   */
+  public static List<RankedGuess> top(Corpus guesses, Corpus candidates, int k) {
+    Objects.requireNonNull(guesses, "guesses cannot be null");
+    Objects.requireNonNull(candidates, "candidates cannot be null");
+    return top(guesses.getCorpus(), candidates.getCorpus(), candidates.statistics(), k);
+  }
+
+  /**
+   * Finds the k best guesses, bounding them with the given statistics of the candidates.
+   *
+   * @see #top(Corpus, Corpus, int)
+   */
+  static List<RankedGuess> top(
+      Collection<NGram> guesses, Collection<NGram> candidates, LetterStatistics statistics, int k) {
+    return search(guesses, candidates, statistics, k).run();
+  }
+
+  /** Creates a search without running it. */
+  static GuessSearch search(
+      Collection<NGram> guesses, Collection<NGram> candidates, LetterStatistics statistics, int k) {
+    Optional.of(k)
+        .filter(size -> size > 0)
+        .orElseThrow(() -> new IllegalArgumentException("k must be positive"));
+
+    List<NGram> words = List.copyOf(candidates);
+    return new GuessSearch(
+        guesses.stream()
+            .filter(guess -> words.isEmpty() || guess.size() == statistics.wordSize())
+            .collect(Collectors.toList()),
+        words,
+        statistics,
+        k);
+  }
+
+  /**
+   * Ranks every guess by scoring it in full. This is the reference the search must agree with.
+   *
+   * @see #top(Corpus, Corpus, int)
+   */
+  static List<RankedGuess> exhaustive(
+      Collection<NGram> guesses, Collection<NGram> candidates, int k) {
+    List<NGram> words = List.copyOf(candidates);
+    Set<NGram> answers = new HashSet<>(words);
+    return guesses.stream()
+        .distinct()
+        .filter(guess -> words.stream().allMatch(word -> word.size() == guess.size()))
+        .map(guess -> new RankedGuess(guess, score(guess, words), answers.contains(guess)))
+        .sorted(RankedGuess.BEST_FIRST)
+        .limit(k)
+        .collect(Collectors.toList());
+  }
+
+  /** Runs the workers and merges their results. */
+  List<RankedGuess> run() {
+    int workers = Math.max(1, Math.min(ForkJoinPool.getCommonPoolParallelism(), guesses.length));
+    return IntStream.range(0, workers)
+        .parallel()
+        .mapToObj(worker -> work())
+        .flatMap(Collection::stream)
+        .sorted(RankedGuess.BEST_FIRST)
+        .limit(k)
+        .collect(Collectors.toList());
+  }
+
+  /** Returns the number of guesses that were scored in full. */
+  int scored() {
+    return scored.get();
+  }
+
+  /** Scores claimed guesses until the next bound cannot reach the threshold. */
+  private Collection<RankedGuess> work() {
+    PriorityQueue<RankedGuess> best = new PriorityQueue<>(RankedGuess.BEST_FIRST.reversed());
+    for (int i = next.getAndIncrement(); i < guesses.length; i = next.getAndIncrement()) {
+      if (bounds[i] < threshold.get()) {
+        break;
+      }
+      best.add(
+          new RankedGuess(guesses[i], score(guesses[i], candidates), answers.contains(guesses[i])));
+      scored.incrementAndGet();
+      if (best.size() > k) {
+        best.poll();
+      }
+      if (best.size() == k) {
+        threshold.accumulateAndGet(best.peek().partitions(), Math::max);
+      }
+    }
+    return new ArrayList<>(best);
+  }
+
+  /** Counts the distinct feedback patterns of the guess over the candidates. */
+  private static int score(NGram guess, List<NGram> candidates) {
+    return (int)
+        candidates.stream().mapToInt(word -> NGramMatcher.pattern(word, guess)).distinct().count();
+  }
+
+  /**
+   * Bounds the number of distinct feedback patterns of the guess. Every position of a guess is
+   * either a match, elsewhere or absent independently of the others, except that a letter is absent
+   * at all of its positions or at none. So the patterns of a letter are "absent everywhere", if
+   * some candidate lacks the letter, plus every combination of match or elsewhere that some
+   * candidate allows at each of its positions; the bound is the product over letters, and at most
+   * the number of candidates.
+   */
+  static int bound(NGram guess, LetterStatistics statistics, int candidates) {
+    Map<Character, List<Integer>> positions = new HashMap<>();
+    guess.forEach(
+        c -> positions.computeIfAbsent(c.character(), key -> new ArrayList<>()).add(c.index()));
+
+    long bound = 1;
+    for (Map.Entry<Character, List<Integer>> letter : positions.entrySet()) {
+      bound = Math.min(bound * options(letter.getKey(), letter.getValue(), statistics), candidates);
+    }
+    return (int) Math.min(bound, candidates);
+  }
+
+  private static long options(char c, List<Integer> positions, LetterStatistics statistics) {
+    int containing = statistics.wordsContaining(c);
+    long present = containing == 0 ? 0 : 1;
+    for (int position : positions) {
+      int matching = statistics.frequency(position, c);
+      present *= (matching > 0 ? 1 : 0) + (containing - matching > 0 ? 1 : 0);
+    }
+    return present + (containing < statistics.words() ? 1 : 0);
+  }
+}
@@ -0,0 +1,172 @@
+package com._404wolf.matchle;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the state of a hard-mode game, in which every guess must be consistent with all hints
+ * given so far.
+ *
+ * <p>The legal guess pool and the candidate answers are kept as two {@link BitSet}s over one shared
+ * {@link WordIndex}. Each hint narrows both sets at once, testing only the words that are still
+ * live in either, so the pool never has to be rebuilt from the full guess list. A proposed guess is
+ * validated with one index lookup, which is linear in the word length.
+ *
+ * <p>The session also keeps the {@link LetterStatistics} of the candidates, removing every rejected
+ * candidate from them as hints arrive instead of recounting.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * HardModeSession session = HardModeSession.of(guesses, answers);
+ * NGram guess = NGram.from("route");
+ * session.play(guess, NGramMatcher.of(key, guess).match());
+ * Corpus pool = session.legalGuesses();
+ * </pre>
+ */
+public final class HardModeSession {
+  /** The index shared by the legal guess pool and the candidate answers. */
+  private final WordIndex index;
+
+  /** The ids of the guesses that are consistent with every hint so far. */
+  private final BitSet legal;
+
+  /** The ids of the answers that are consistent with every hint so far. */
+  private final BitSet candidates;
+
+  /** The letter statistics of the remaining candidates. */
+  private final LetterStatistics statistics;
+
+  private HardModeSession(
+      WordIndex index, BitSet legal, BitSet candidates, LetterStatistics statistics) {
+    this.index = index;
+    this.legal = legal;
+    this.candidates = candidates;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Starts a hard-mode session. Every answer is also accepted as a guess, so the legal pool starts
+   * as the union of both corpora.
+   *
+   * @param guesses the words that may be guessed
+   * @param answers the words that may be the answer
+   * @return a new HardModeSession
+   * @throws NullPointerException if either corpus is null
+   */
+  public static HardModeSession of(Corpus guesses, Corpus answers) {
+    Objects.requireNonNull(guesses, "guesses cannot be null");
+    Objects.requireNonNull(answers, "answers cannot be null");
+
+    List<NGram> words = new ArrayList<>(guesses.getCorpus());
+    words.addAll(answers.getCorpus());
+    WordIndex index = WordIndex.of(words);
+
+    BitSet candidates = index.ids(answers);
+    BitSet legal = index.ids(guesses);
+    legal.or(candidates);
+    return new HardModeSession(index, legal, candidates, answers.statistics());
+  }
+
+  /**
+   * Checks whether the guess is consistent with every hint given so far.
+   *
+   * @param guess the proposed guess
+   * @return true if the guess may be played, false otherwise
+   */
+  public boolean isLegal(NGram guess) {
+    return Optional.ofNullable(guess).flatMap(index::id).map(legal::get).orElse(false);
+  }
+
+  /**
+   * Plays a guess and narrows the legal pool and the candidates by the hint it received.
+   *
+   * @param guess the guess that was played
+   * @param hint the filter describing the feedback for the guess
+   * @return this session for method chaining
+   * @throws NullPointerException if the hint is null
+   * @throws IllegalArgumentException if the guess is not legal
+   */
+  public HardModeSession play(NGram guess, Filter hint) {
+    Objects.requireNonNull(hint, "hint cannot be null");
+    Optional.of(guess)
+        .filter(this::isLegal)
+        .orElseThrow(() -> new IllegalArgumentException("guess is not legal: " + guess));
+
+    BitSet live = (BitSet) legal.clone();
+    live.or(candidates);
+    BitSet rejected = index.rejected(hint, live);
+
+    rejected.stream().filter(candidates::get).mapToObj(index::word).forEach(statistics::remove);
+    legal.andNot(rejected);
+    candidates.andNot(rejected);
+    return this;
+  }
+
+  /**
+   * Returns the guesses that are consistent with every hint so far. This is the only pool a solver
+   * needs to consider.
+   *
+   * @return a Corpus of the legal guesses
+   */
+  public Corpus legalGuesses() {
+    return index.corpus(legal);
+  }
+
+  /**
+   * Returns the answers that are consistent with every hint so far.
+   *
+   * @return a Corpus of the remaining candidate answers
+   */
+  public Corpus candidates() {
+    return index.corpus(candidates);
+  }
+
+  /**
+   * Finds the k legal guesses that split the remaining candidates into the most distinct feedback
+   * patterns, bounding guesses with the session's letter statistics.
+   *
+   * @param k the number of guesses to find
+   * @return up to k guesses, best first
+   * @throws IllegalArgumentException if k is not positive
+   */
+  public List<RankedGuess> bestGuesses(int k) {
+    return GuessSearch.top(words(legal), words(candidates), statistics, k);
+  }
+
+  private List<NGram> words(BitSet ids) {
+    return ids.stream().mapToObj(index::word).collect(Collectors.toList());
+  }
+
+  /**
+   * Returns the letter statistics of the remaining candidates.
+   *
+   * @return a copy of the statistics
+   */
+  LetterStatistics statistics() {
+    return statistics.copy();
+  }
+
+  /**
+   * Returns the number of legal guesses.
+   *
+   * @return the number of legal guesses
+   */
+  public int legalCount() {
+    return legal.cardinality();
+  }
+
+  /**
+   * Returns the number of remaining candidate answers.
+   *
+   * @return the number of remaining candidate answers
+   */
+  public int candidateCount() {
+    return candidates.cardinality();
+  }
+}
@@ -0,0 +1,265 @@
+package com._404wolf.matchle;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Letter frequencies of a set of n-grams of one size: how often each character occurs at each
+ * position, how often it occurs overall, and a histogram of how many n-grams contain it exactly k
+ * times.
+ *
+ * <p>The statistics are updated incrementally: {@link #add(NGram)} and {@link #remove(NGram)} cost
+ * time linear in the word size, so narrowing a candidate set only pays for the words it removes.
+ * Per-character queries take constant time and per-position queries time linear in the alphabet.
+ * This class is not thread-safe; use {@link #copy()} to hand out a snapshot.
+ */
+final class LetterStatistics {
+  private final int wordSize;
+  private final Map<Character, Counts> counts;
+  private int words;
+
+  /** The counts of one character. */
+  private static final class Counts {
+    /** The number of n-grams with the character at each position. */
+    private final int[] positions;
+
+    /** The number of n-grams containing the character exactly k times, for k from 1. */
+    private final int[] histogram;
+
+    /** The number of occurrences of the character over all n-grams. */
+    private int total;
+
+    private Counts(int wordSize) {
+      this.positions = new int[wordSize];
+      this.histogram = new int[wordSize + 1];
+    }
+
+    private Counts copy() {
+      Counts copy = new Counts(positions.length);
+      System.arraycopy(positions, 0, copy.positions, 0, positions.length);
+      System.arraycopy(histogram, 0, copy.histogram, 0, histogram.length);
+      copy.total = total;
+      return copy;
+    }
+  }
+
+  private LetterStatistics(int wordSize, Map<Character, Counts> counts, int words) {
+    this.wordSize = wordSize;
+    this.counts = counts;
+    this.words = words;
+  }
+
+  /**
+   * Creates empty statistics for n-grams of the given size.
+   *
+   * @param wordSize the size of the n-grams
+   * @return new, empty statistics
+   */
+  static LetterStatistics empty(int wordSize) {
+    return new LetterStatistics(wordSize, new HashMap<>(), 0);
+  }
+
+  /**
+   * Computes the statistics of the given n-grams.
+   *
+   * @param wordSize the size of the n-grams
+   * @param ngrams the n-grams to count
+   * @return new statistics of the n-grams
+   * @throws IllegalArgumentException if an n-gram has a different size
+   */
+  static LetterStatistics of(int wordSize, Iterable<NGram> ngrams) {
+    LetterStatistics statistics = empty(wordSize);
+    ngrams.forEach(statistics::add);
+    return statistics;
+  }
+
+  /**
+   * Returns an independent copy of these statistics.
+   *
+   * @return a copy that later updates to either do not affect
+   */
+  LetterStatistics copy() {
+    return new LetterStatistics(
+        wordSize,
+        counts.entrySet().stream()
+            .collect(
+                Collectors.toMap(
+                    Map.Entry::getKey, e -> e.getValue().copy(), (a, b) -> a, HashMap::new)),
+        words);
+  }
+
+  /**
+   * Counts an n-gram.
+   *
+   * @param ngram the n-gram to add
+   * @return these statistics for method chaining
+   * @throws IllegalArgumentException if the n-gram has a different size
+   */
+  LetterStatistics add(NGram ngram) {
+    update(ngram, 1);
+    return this;
+  }
+
+  /**
+   * Uncounts an n-gram that was previously counted.
+   *
+   * @param ngram the n-gram to remove
+   * @return these statistics for method chaining
+   * @throws IllegalArgumentException if the n-gram has a different size
+   */
+  LetterStatistics remove(NGram ngram) {
+    update(ngram, -1);
+    return this;
+  }
+
+  private void update(NGram ngram, int delta) {
+    Objects.requireNonNull(ngram, "ngram cannot be null");
+    Optional.of(ngram)
+        .filter(n -> n.size() == wordSize)
+        .orElseThrow(() -> new IllegalArgumentException("n-gram size differs: " + ngram));
+
+    Map<Character, Integer> occurrences = new HashMap<>();
+    ngram.forEach(
+        c -> {
+          Counts letter = counts.computeIfAbsent(c.character(), k -> new Counts(wordSize));
+          letter.positions[c.index()] += delta;
+          letter.total += delta;
+          occurrences.merge(c.character(), 1, Integer::sum);
+        });
+    occurrences.forEach((c, k) -> counts.get(c).histogram[k] += delta);
+    words += delta;
+  }
+
+  /**
+   * Returns the bytes of these statistics, as laid out by {@link Footprint}.
+   *
+   * @return the footprint of these statistics
+   */
+  long footprint() {
+    return Footprint.object(1, 2 * Integer.BYTES)
+        + Footprint.hashMap(counts.size())
+        + counts.keySet().stream()
+            .mapToLong(c -> Footprint.boxed(c) + countsFootprint(wordSize))
+            .sum();
+  }
+
+  /**
+   * Estimates the bytes of the statistics of n-grams of the given size that use the given number of
+   * distinct ASCII letters.
+   *
+   * @param letters the number of distinct letters
+   * @param wordSize the size of the n-grams
+   * @return the expected footprint of the statistics
+   */
+  static long estimate(long letters, int wordSize) {
+    return Footprint.object(1, 2 * Integer.BYTES)
+        + Footprint.hashMap(letters)
+        + letters * countsFootprint(wordSize);
+  }
+
+  private static long countsFootprint(int wordSize) {
+    return Footprint.object(2, Integer.BYTES)
+        + Footprint.array(wordSize, Integer.BYTES)
+        + Footprint.array(wordSize + 1, Integer.BYTES);
+  }
+
+  /**
+   * Returns the number of counted n-grams.
+   *
+   * @return the number of counted n-grams
+   */
+  int words() {
+    return words;
+  }
+
+  /**
+   * Returns the size of the counted n-grams.
+   *
+   * @return the word size
+   */
+  int wordSize() {
+    return wordSize;
+  }
+
+  /**
+   * Returns the number of n-grams with the character at the position.
+   *
+   * @param position the position
+   * @param c the character
+   * @return the number of n-grams with the character at the position
+   */
+  int frequency(int position, char c) {
+    return Optional.ofNullable(counts.get(c))
+        .map(letter -> letter.positions[Objects.checkIndex(position, wordSize)])
+        .orElse(0);
+  }
+
+  /**
+   * Returns the number of occurrences of the character over all n-grams.
+   *
+   * @param c the character
+   * @return the number of occurrences
+   */
+  int frequency(char c) {
+    return Optional.ofNullable(counts.get(c)).map(letter -> letter.total).orElse(0);
+  }
+
+  /**
+   * Returns the number of n-grams containing the character at least once.
+   *
+   * @param c the character
+   * @return the number of n-grams containing the character
+   */
+  int wordsContaining(char c) {
+    return words - histogram(c)[0];
+  }
+
+  /**
+   * Returns how many n-grams contain the character exactly k times, for every k from 0 to the word
+   * size.
+   *
+   * @param c the character
+   * @return a new array whose element k is the number of n-grams with k occurrences
+   */
+  int[] histogram(char c) {
+    int[] histogram =
+        Optional.ofNullable(counts.get(c))
+            .map(letter -> letter.histogram.clone())
+            .orElseGet(() -> new int[wordSize + 1]);
+    int containing = 0;
+    for (int k = 1; k <= wordSize; k++) {
+      containing += histogram[k];
+    }
+    histogram[0] = words - containing;
+    return histogram;
+  }
+
+  /**
+   * Returns the frequency of every character at the position.
+   *
+   * @param position the position
+   * @return the characters occurring at the position, mapped to their frequency there
+   */
+  Map<Character, Integer> frequencies(int position) {
+    Objects.checkIndex(position, wordSize);
+    return counts.entrySet().stream()
+        .filter(e -> e.getValue().positions[position] > 0)
+        .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().positions[position]));
+  }
+
+  /**
+   * Returns the characters that occur in at least one counted n-gram.
+   *
+   * @return the characters in use
+   */
+  Set<Character> letters() {
+    return counts.entrySet().stream()
+        .filter(e -> e.getValue().total > 0)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+}
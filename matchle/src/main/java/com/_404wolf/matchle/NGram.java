@@ -13,11 +13,31 @@ import java.util.stream.Stream;
 /** Represents a character with its index in the NGram. */
 record IndexedCharacter(int index, Character character) {}
 
-/** Represents an n-gram, which is a sequence of n characters. This class is immutable. */
+/**
+ * Represents an n-gram, which is a sequence of n characters. This class is immutable: its only
+ * mutable field caches the packing of its characters, which is derived from them alone. The cache
+ * is a benign race: it holds an immutable record that is written whole, so a thread sees either no
+ * packing, a complete one for some alphabet, and at worst packs the n-gram again.
+ */
 public final class NGram implements Iterable<IndexedCharacter> {
   private final List<Character> ngram;
   private final Set<Character> charset;
 
+  /**
+   * The packing of this n-gram under the alphabet it was last packed for. The packing is immutable,
+   * so a race between two threads packing the n-gram only costs a redundant computation.
+   */
+  private Packing packing;
+
+  /**
+   * An n-gram packed under an alphabet.
+   *
+   * @param alphabet the alphabet the codes are from
+   * @param packed the packed characters, or -1 if the n-gram cannot be packed
+   * @param letters the letter mask of the characters, valid only when the n-gram is packed
+   */
+  private record Packing(Alphabet alphabet, long packed, long letters) {}
+
   /**
    * Private constructor to initialize the NGram. Use the static factory methods to create instances
    * of NGram.
@@ -122,6 +142,69 @@ public final class NGram implements Iterable<IndexedCharacter> {
     return ngram.size();
   }
 
+  /**
+   * Checks if this n-gram has a packed representation under the alphabet, which requires at most
+   * {@link Alphabet#maxPackedSize()} characters, all in the alphabet.
+   *
+   * @param alphabet the alphabet to pack with
+   * @return true if the n-gram is packed, false otherwise
+   */
+  boolean isPacked(Alphabet alphabet) {
+    return packing(alphabet).packed() >= 0;
+  }
+
+  /**
+   * Returns the packed representation of this n-gram, as computed by {@link Alphabet#pack(NGram)}.
+   * The packing for the most recently used alphabet is cached.
+   *
+   * @param alphabet the alphabet to pack with
+   * @return the packed characters, or -1 if the n-gram is not packed
+   */
+  long packed(Alphabet alphabet) {
+    return packing(alphabet).packed();
+  }
+
+  /**
+   * Returns a bitmask with bit {@code code(c) - 1} set for every character c in this n-gram.
+   *
+   * @param alphabet the alphabet to code the characters with
+   * @return the letter mask, meaningful only if the n-gram is packed
+   */
+  long letters(Alphabet alphabet) {
+    return packing(alphabet).letters();
+  }
+
+  /**
+   * Returns the alphabet this n-gram was most recently packed with, so that callers free to choose
+   * an alphabet can avoid repacking it.
+   *
+   * @return the alphabet of the cached packing, or {@link Alphabet#LATIN} if there is none
+   */
+  Alphabet alphabet() {
+    Packing cached = packing;
+    return cached == null ? Alphabet.LATIN : cached.alphabet();
+  }
+
+  private Packing packing(Alphabet alphabet) {
+    Packing cached = packing;
+    if (cached == null || cached.alphabet() != alphabet) {
+      cached = new Packing(alphabet, alphabet.pack(this), alphabet.mask(charset));
+      packing = cached;
+    }
+    return cached;
+  }
+
+  /**
+   * Returns the bytes of this n-gram, as laid out by {@link Footprint}.
+   *
+   * @return the footprint of this n-gram and the collections it owns
+   */
+  long footprint() {
+    return Footprint.ngram(ngram.size(), charset.size())
+        + (packing == null ? 0 : Footprint.PACKING)
+        + ngram.stream().mapToLong(Footprint::boxed).sum();
+  }
+
   /**
    * Checks if the given IndexedCharacter matches the character at its index in this NGram.
    *
@@ -20,6 +20,9 @@ final class NGramMatcher {
 
   private record MatchReport(IndexedCharacter indexedCharacter, MatchReportStatus status) {}
 
+  /** The longest n-grams with a pattern, since {@code 3^20 - 1} does not fit in an int. */
+  static final int MAX_PATTERN_SIZE = 19;
+
   public static NGramMatcher of(NGram key, NGram guess) {
     Objects.requireNonNull(key, "key cannot be null");
     Objects.requireNonNull(guess, "guess cannot be null");
@@ -66,16 +69,92 @@ final class NGramMatcher {
         .filter(isMatched -> !isMatched) // if we have NOT matched, "keep it" and then don't throw
         .orElseThrow(() -> new IllegalArgumentException("can't match multiple times"));
 
+    Events.MatchEvent event = new Events.MatchEvent();
+    event.begin();
     try {
-      return Optional.of(Filter.FALSE)
-          .filter(b -> key.size() == guess.size()) // Check if the n-grams have the same length
-          .map(b -> buildMatchFilter()) // Build the match filter if conditions met
-          .orElse(Filter.FALSE); // Return FALSE if lengths don't match
+      Filter filter =
+          Optional.of(Filter.FALSE)
+              .filter(b -> key.size() == guess.size()) // Check if the n-grams have the same length
+              .map(b -> buildMatchFilter()) // Build the match filter if conditions met
+              .orElse(Filter.FALSE); // Return FALSE if lengths don't match
+      event.finish(key, filter);
+      return filter;
     } finally {
       matched = true;
     }
   }
 
+  /**
+   * Computes the feedback pattern of a guess against a key as a single number. Digit i of the
+   * pattern in base 3 is the ordinal of the {@link MatchReportStatus} at index i, so two guesses
+   * get the same pattern exactly when their match reports agree.
+   *
+   * <p>Patterns are memoized in the shared {@link FeedbackCache} of the alphabet the key is packed
+   * with, so a pair seen before costs a hash probe. Pairs packed under different alphabets are
+   * matched directly, so that neither n-gram is repacked.
+   *
+   * <p>Patterns of n-grams longer than {@value #MAX_PATTERN_SIZE} characters would overflow an int,
+   * so such n-grams are rejected.
+   *
+   * @param key the key to match against
+   * @param guess the guess to match
+   * @return the pattern code, from 0 to {@code 3^n - 1}
+   * @throws NullPointerException if either argument is null
+   * @throws IllegalArgumentException if the n-grams have different lengths, or are longer than
+   *     {@value #MAX_PATTERN_SIZE} characters
+   */
+  static int pattern(NGram key, NGram guess) {
+    Objects.requireNonNull(key, "key cannot be null");
+    Objects.requireNonNull(guess, "guess cannot be null");
+    checkPatternSize(key, guess);
+
+    Alphabet alphabet = key.alphabet();
+    return guess.alphabet() == alphabet
+        ? FeedbackCache.shared(alphabet).pattern(key, guess)
+        : computePattern(key, guess);
+  }
+
+  /**
+   * Computes the feedback pattern of a guess against a key, as {@link #pattern(NGram, NGram)} does,
+   * without the cache.
+   *
+   * @param key the key to match against
+   * @param guess the guess to match
+   * @return the pattern code, from 0 to {@code 3^n - 1}
+   * @throws NullPointerException if either argument is null
+   * @throws IllegalArgumentException if the n-grams have different lengths, or are longer than
+   *     {@value #MAX_PATTERN_SIZE} characters
+   */
+  static int computePattern(NGram key, NGram guess) {
+    NGramMatcher matcher = NGramMatcher.of(key, guess);
+    checkPatternSize(key, guess);
+
+    matcher.matchSamePosition().matchDifferentPositions().matchAbsentCharacters();
+    int[] digits = new int[guess.size()];
+    matcher.reports.forEach(
+        report -> digits[report.indexedCharacter().index()] = report.status().ordinal());
+
+    int pattern = 0;
+    int power = 1;
+    for (int digit : digits) {
+      pattern += digit * power;
+      power *= 3;
+    }
+    return pattern;
+  }
+
+  private static void checkPatternSize(NGram key, NGram guess) {
+    Optional.of(guess)
+        .filter(g -> key.size() == g.size())
+        .orElseThrow(() -> new IllegalArgumentException("n-grams have different lengths"));
+    Optional.of(guess)
+        .filter(g -> g.size() <= MAX_PATTERN_SIZE)
+        .orElseThrow(
+            () ->
+                new IllegalArgumentException(
+                    "n-grams longer than " + MAX_PATTERN_SIZE + " have no pattern"));
+  }
+
   /**
    * Builds a predicate that represents the matching pattern between the key and guess. The matching
    * algorithm works in three phases: 1. Matches identical characters in the same positions 2.
@@ -87,12 +166,20 @@ final class NGramMatcher {
       new EnumMap<>(
           Map.of(
               MatchReportStatus.CharMatch,
-              report -> Filter.from(ngram -> ngram.matches(report.indexedCharacter())),
+              report ->
+                  Filter.from(
+                      ngram -> ngram.matches(report.indexedCharacter()),
+                      Constraint.fixed(report.indexedCharacter())),
               MatchReportStatus.CharElsewhere,
-              report -> Filter.from(ngram -> ngram.containsElsewhere(report.indexedCharacter())),
+              report ->
+                  Filter.from(
+                      ngram -> ngram.containsElsewhere(report.indexedCharacter()),
+                      Constraint.elsewhere(report.indexedCharacter())),
               MatchReportStatus.CharAbsent,
               report ->
-                  Filter.from(ngram -> !ngram.contains(report.indexedCharacter().character()))));
+                  Filter.from(
+                      ngram -> !ngram.contains(report.indexedCharacter().character()),
+                      Constraint.absent(report.indexedCharacter().character()))));
 
   private Filter buildMatchFilter() {
     // At this point we should not have matched already
@@ -130,7 +217,7 @@ final class NGramMatcher {
         : "Matched keys should all be false";
 
     guessIndexStream()
-        .filter(i -> guess.get(i) == key.get(i)) // only keep exact matches
+        .filter(i -> guess.get(i).equals(key.get(i))) // only keep exact matches
         .forEach(
             i -> {
               reports.add(
@@ -161,7 +248,8 @@ final class NGramMatcher {
               IntStream.range(0, key.size())
                   .filter(
                       j -> j != i) // don't count this index, it's our own index (not "elsewhere")
-                  .filter(j -> key.get(j) == guess.get(i)) // chars match (and it's not our index)
+                  .filter(
+                      j -> key.get(j).equals(guess.get(i))) // chars match (and it's not our index)
                   .findFirst() // get the first char that matched to "use" as the matchpoint
                   .ifPresent( // if there was a match, handle it
                       j -> {
@@ -0,0 +1,251 @@
+package com._404wolf.matchle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * The precomputed first move and the best reply to every feedback it can get, for one pair of guess
+ * and answer corpora.
+ *
+ * <p>The opening is the guess that splits the answers into the most feedback patterns, as found by
+ * {@link GuessSearch}; each reply is the best guess for the answers left by one pattern, preferring
+ * one of those answers among equally good guesses. The replies are computed in parallel, and
+ * afterwards both moves are served from memory in constant time. Patterns are those of {@link
+ * NGramMatcher#pattern(NGram, NGram)}: digit i in base 3 is 0 if the guess's character at index i
+ * matches, 1 if it occurs elsewhere and 2 if it is absent.
+ *
+ * <p>A book records the content hashes of both corpora. {@link #load(Path, Corpus, Corpus)} only
+ * accepts a book whose hashes match the given corpora, so a book saved for other words is never
+ * served. A file with another format version, or one that is truncated or corrupt, is not a usable
+ * book either; in every such case {@link #of(Path, Corpus, Corpus)} recomputes and replaces it.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * OpeningBook book = OpeningBook.of(Path.of("answers.book"), guesses, answers);
+ * NGram first = book.opening().orElseThrow();
+ * Optional&lt;NGram&gt; second = book.reply(pattern);
+ * </pre>
+ */
+public final class OpeningBook {
+  /** Identifies the file format, and changes whenever the format or the scoring does. */
+  private static final int MAGIC = 0x4d424f32;
+
+  private final String guessesHash;
+  private final String answersHash;
+  private final NGram opening;
+  private final Map<Integer, NGram> replies;
+
+  private OpeningBook(
+      String guessesHash, String answersHash, NGram opening, Map<Integer, NGram> replies) {
+    this.guessesHash = guessesHash;
+    this.answersHash = answersHash;
+    this.opening = opening;
+    this.replies = replies;
+  }
+
+  /**
+   * Computes the opening book of the corpora.
+   *
+   * @param guesses the words that may be guessed
+   * @param answers the words that may be the answer
+   * @return a new OpeningBook
+   * @throws NullPointerException if either corpus is null
+   */
+  public static OpeningBook compute(Corpus guesses, Corpus answers) {
+    Objects.requireNonNull(guesses, "guesses cannot be null");
+    Objects.requireNonNull(answers, "answers cannot be null");
+
+    NGram opening =
+        GuessSearch.top(guesses, answers, 1).stream()
+            .findFirst()
+            .filter(best -> best.partitions() > 0)
+            .map(RankedGuess::guess)
+            .orElse(null);
+    Map<Integer, NGram> replies =
+        opening == null ? Map.of() : replies(guesses.getCorpus(), answers.getCorpus(), opening);
+    return new OpeningBook(guesses.contentHash(), answers.contentHash(), opening, replies);
+  }
+
+  private static Map<Integer, NGram> replies(
+      Collection<NGram> guesses, Collection<NGram> answers, NGram opening) {
+    Map<Integer, List<NGram>> partitions =
+        answers.stream()
+            .collect(Collectors.groupingBy(answer -> NGramMatcher.pattern(answer, opening)));
+    return partitions.entrySet().parallelStream()
+        .collect(
+            Collectors.toUnmodifiableMap(
+                Map.Entry::getKey,
+                partition ->
+                    GuessSearch.top(
+                            guesses,
+                            partition.getValue(),
+                            LetterStatistics.of(opening.size(), partition.getValue()),
+                            1)
+                        .get(0)
+                        .guess()));
+  }
+
+  /**
+   * Loads the book saved at the path if it is valid for the corpora, and otherwise computes the
+   * book and saves it there.
+   *
+   * @param path the file of the book, usually next to the corpus
+   * @param guesses the words that may be guessed
+   * @param answers the words that may be the answer
+   * @return the opening book of the corpora
+   * @throws UncheckedIOException if the book cannot be read or written
+   */
+  public static OpeningBook of(Path path, Corpus guesses, Corpus answers) {
+    return load(path, guesses, answers)
+        .orElseGet(
+            () -> {
+              OpeningBook book = compute(guesses, answers);
+              book.save(path);
+              return book;
+            });
+  }
+
+  /**
+   * Loads the book saved at the path, if there is one and it was computed for the same corpora.
+   *
+   * @param path the file of the book
+   * @param guesses the words that may be guessed
+   * @param answers the words that may be the answer
+   * @return the book, or empty if there is no file, it is not a usable book, or it belongs to other
+   *     corpora
+   * @throws UncheckedIOException if the file exists but cannot be read
+   */
+  public static Optional<OpeningBook> load(Path path, Corpus guesses, Corpus answers) {
+    Objects.requireNonNull(path, "path cannot be null");
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      return read(in).filter(book -> book.isValidFor(guesses, answers));
+    } catch (NoSuchFileException e) {
+      return Optional.empty();
+    } catch (IOException e) {
+      throw new UncheckedIOException("cannot read opening book " + path, e);
+    }
+  }
+
+  /**
+   * Reads a book, returning empty if the contents are not a book of the current format: a wrong
+   * magic number, a truncated file, malformed text or an invalid word.
+   */
+  private static Optional<OpeningBook> read(DataInputStream in) throws IOException {
+    try {
+      if (in.readInt() != MAGIC) {
+        return Optional.empty();
+      }
+      String guessesHash = in.readUTF();
+      String answersHash = in.readUTF();
+      NGram opening = in.readBoolean() ? NGram.from(in.readUTF()) : null;
+      int count = in.readInt();
+      Map<Integer, NGram> replies = new HashMap<>();
+      for (int i = 0; i < count; i++) {
+        replies.put(in.readInt(), NGram.from(in.readUTF()));
+      }
+      return Optional.of(new OpeningBook(guessesHash, answersHash, opening, Map.copyOf(replies)));
+    } catch (EOFException | UTFDataFormatException | IllegalArgumentException e) {
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Saves this book to the path, replacing any file there. The book is written to a temporary file
+   * of its own in the same directory and atomically moved into place, so readers never see a
+   * partial book and concurrent savers never write to the same file.
+   *
+   * @param path the file to save to
+   * @throws UncheckedIOException if the book cannot be written
+   */
+  public void save(Path path) {
+    Objects.requireNonNull(path, "path cannot be null");
+    Path target = path.toAbsolutePath();
+    Path temporary = null;
+    try {
+      temporary = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+        write(out);
+      }
+      Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      deleteQuietly(temporary);
+      throw new UncheckedIOException("cannot write opening book " + path, e);
+    }
+  }
+
+  private static void deleteQuietly(Path temporary) {
+    try {
+      if (temporary != null) {
+        Files.deleteIfExists(temporary);
+      }
+    } catch (IOException e) {
+      // the save has failed either way
+    }
+  }
+
+  private void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeUTF(guessesHash);
+    out.writeUTF(answersHash);
+    out.writeBoolean(opening != null);
+    if (opening != null) {
+      out.writeUTF(opening.toString());
+    }
+    out.writeInt(replies.size());
+    for (Map.Entry<Integer, NGram> reply : replies.entrySet()) {
+      out.writeInt(reply.getKey());
+      out.writeUTF(reply.getValue().toString());
+    }
+  }
+
+  /**
+   * Returns the best first guess.
+   *
+   * @return the opening, or empty if there are no answers or no guesses of their size
+   */
+  public Optional<NGram> opening() {
+    return Optional.ofNullable(opening);
+  }
+
+  /**
+   * Returns the best second guess after the opening received the given feedback.
+   *
+   * @param pattern the feedback of the opening, encoded as described above
+   * @return the reply, or empty if no answer gives the opening this feedback
+   */
+  public Optional<NGram> reply(int pattern) {
+    return Optional.ofNullable(replies.get(pattern));
+  }
+
+  /**
+   * Checks whether this book was computed for the given corpora.
+   *
+   * @param guesses the words that may be guessed
+   * @param answers the words that may be the answer
+   * @return true if both corpora have the contents the book was computed for
+   */
+  public boolean isValidFor(Corpus guesses, Corpus answers) {
+    return guessesHash.equals(guesses.contentHash()) && answersHash.equals(answers.contentHash());
+  }
+}
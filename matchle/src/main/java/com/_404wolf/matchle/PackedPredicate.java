@@ -0,0 +1,16 @@
+package com._404wolf.matchle;
+
+/**
+ * A predicate over the packed representation of an n-gram. Implementations are generated at runtime
+ * by {@link FilterCompiler}.
+ */
+interface PackedPredicate {
+  /**
+   * Tests a packed n-gram.
+   *
+   * @param packed the packed characters, as returned by {@link NGram#packed(Alphabet)}
+   * @param letters the letter mask, as returned by {@link NGram#letters(Alphabet)}
+   * @return true if the n-gram passes, false otherwise
+   */
+  boolean test(long packed, long letters);
+}
@@ -0,0 +1,303 @@
+package com._404wolf.matchle;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * An immutable set backed by a hash array mapped trie. Adding or removing an element with {@link
+ * #with(Object)} or {@link #without(Object)} returns a new set that shares all untouched nodes with
+ * the old one, in time logarithmic in the size of the set. Old versions stay valid and unchanged,
+ * so they can be read concurrently without locking.
+ *
+ * <p>Each level of the trie consumes five bits of an element's hash. Elements whose hashes are
+ * equal in all 32 bits share a collision node.
+ *
+ * @param <E> the type of the elements
+ */
+final class PersistentSet<E> extends AbstractSet<E> {
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentSet<?> EMPTY =
+      new PersistentSet<>(new Branch(0, new Object[0]), 0);
+
+  private final Node root;
+  private final int size;
+
+  private PersistentSet(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Returns the empty set.
+   *
+   * @param <E> the type of the elements
+   * @return the empty set
+   */
+  @SuppressWarnings("unchecked")
+  static <E> PersistentSet<E> empty() {
+    return (PersistentSet<E>) EMPTY;
+  }
+
+  /**
+   * Returns a set of the non-null elements of a collection.
+   *
+   * @param <E> the type of the elements
+   * @param elements the elements of the set
+   * @return a new set
+   */
+  static <E> PersistentSet<E> of(Collection<? extends E> elements) {
+    PersistentSet<E> set = empty();
+    for (E element : elements) {
+      set = element == null ? set : set.with(element);
+    }
+    return set;
+  }
+
+  /**
+   * Returns a set that also contains the element.
+   *
+   * @param element the element to add
+   * @return a new set with the element, or this set if it already contains it
+   * @throws NullPointerException if the element is null
+   */
+  PersistentSet<E> with(E element) {
+    Objects.requireNonNull(element, "element cannot be null");
+    return contains(element)
+        ? this
+        : new PersistentSet<>(root.with(element, hash(element), 0), size + 1);
+  }
+
+  /**
+   * Returns a set that does not contain the element.
+   *
+   * @param element the element to remove
+   * @return a new set without the element, or this set if it does not contain it
+   */
+  PersistentSet<E> without(Object element) {
+    return contains(element) ? removed(root.without(element, hash(element), 0)) : this;
+  }
+
+  /**
+   * Returns the bytes of the trie, excluding the elements, as laid out by {@link Footprint}.
+   *
+   * @return the footprint of the set's own structure
+   */
+  long footprint() {
+    return Footprint.object(1, Integer.BYTES) + root.footprint();
+  }
+
+  /**
+   * Estimates the bytes of the trie of a set of n elements with uniform hashes, excluding the
+   * elements. A branch exists for every hash prefix shared by at least two elements, so the
+   * expected number of branches at each level follows from the occupancy of its prefixes.
+   *
+   * @param n the number of elements
+   * @return the expected footprint of the set's own structure
+   */
+  static long estimate(long n) {
+    double branches = 1;
+    for (int shift = BITS; shift < Integer.SIZE && n > 1; shift += BITS) {
+      double prefixes = Math.pow(2, Math.min(shift, Integer.SIZE));
+      double empty = Math.exp(n * Math.log1p(-1 / prefixes));
+      double single = n / prefixes * Math.exp((n - 1) * Math.log1p(-1 / prefixes));
+      branches += prefixes * (1 - empty - single);
+    }
+    long nodes = Math.round(branches);
+    return Footprint.object(1, Integer.BYTES)
+        + nodes * (Footprint.object(1, Integer.BYTES) + Footprint.ARRAY_HEADER)
+        + (n + nodes - 1) * Footprint.REFERENCE
+        + nodes * Footprint.REFERENCE / 2;
+  }
+
+  private PersistentSet<E> removed(Node remaining) {
+    return remaining == null ? empty() : new PersistentSet<>(remaining, size - 1);
+  }
+
+  @Override
+  public boolean contains(Object element) {
+    return element != null && root.contains(element, hash(element), 0);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<E> iterator() {
+    return root.elements().map(element -> (E) element).iterator();
+  }
+
+  private static int hash(Object element) {
+    int h = element.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  /** A node of the trie. Nodes are immutable; updates return new nodes. */
+  private abstract static class Node {
+    abstract boolean contains(Object element, int hash, int shift);
+
+    /** Adds an element the node does not contain. */
+    abstract Node with(Object element, int hash, int shift);
+
+    /** Removes an element the node contains, returning null if the node becomes empty. */
+    abstract Node without(Object element, int hash, int shift);
+
+    abstract Stream<Object> elements();
+
+    /** Returns the bytes of this node and its children, excluding the elements. */
+    abstract long footprint();
+  }
+
+  /**
+   * A node holding up to 32 slots, one for every value of the hash bits at its level. The bitmap
+   * records which slots are present, and each present slot is an element or a child node.
+   */
+  private static final class Branch extends Node {
+    private final int bitmap;
+    private final Object[] slots;
+
+    private Branch(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    private static int bit(int hash, int shift) {
+      return 1 << ((hash >>> shift) & MASK);
+    }
+
+    private int slot(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @Override
+    long footprint() {
+      return Footprint.object(1, Integer.BYTES)
+          + Footprint.array(slots.length, Footprint.REFERENCE)
+          + Arrays.stream(slots)
+              .filter(Node.class::isInstance)
+              .mapToLong(slot -> ((Node) slot).footprint())
+              .sum();
+    }
+
+    @Override
+    boolean contains(Object element, int hash, int shift) {
+      int bit = bit(hash, shift);
+      return (bitmap & bit) != 0 && slotContains(slots[slot(bit)], element, hash, shift);
+    }
+
+    private static boolean slotContains(Object slot, Object element, int hash, int shift) {
+      return slot instanceof Node
+          ? ((Node) slot).contains(element, hash, shift + BITS)
+          : slot.equals(element);
+    }
+
+    @Override
+    Node with(Object element, int hash, int shift) {
+      int bit = bit(hash, shift);
+      int slot = slot(bit);
+      if ((bitmap & bit) == 0) {
+        Object[] grown = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, grown, 0, slot);
+        grown[slot] = element;
+        System.arraycopy(slots, slot, grown, slot + 1, slots.length - slot);
+        return new Branch(bitmap | bit, grown);
+      }
+
+      Object existing = slots[slot];
+      return replace(
+          slot,
+          existing instanceof Node
+              ? ((Node) existing).with(element, hash, shift + BITS)
+              : pair(existing, hash(existing), element, hash, shift + BITS));
+    }
+
+    @Override
+    Node without(Object element, int hash, int shift) {
+      int bit = bit(hash, shift);
+      int slot = slot(bit);
+      Object existing = slots[slot];
+      Object replacement =
+          existing instanceof Node ? ((Node) existing).without(element, hash, shift + BITS) : null;
+      return replacement == null ? remove(bit, slot) : replace(slot, replacement);
+    }
+
+    private Node replace(int slot, Object replacement) {
+      Object[] copy = slots.clone();
+      copy[slot] = replacement;
+      return new Branch(bitmap, copy);
+    }
+
+    private Node remove(int bit, int slot) {
+      if (bitmap == bit) {
+        return null;
+      }
+
+      Object[] shrunk = new Object[slots.length - 1];
+      System.arraycopy(slots, 0, shrunk, 0, slot);
+      System.arraycopy(slots, slot + 1, shrunk, slot, shrunk.length - slot);
+      return new Branch(bitmap & ~bit, shrunk);
+    }
+
+    /** Creates the node holding two distinct elements that share hash bits up to this level. */
+    private static Node pair(Object a, int hashA, Object b, int hashB, int shift) {
+      return hashA == hashB
+          ? new Collision(hashA, new Object[] {a, b})
+          : new Branch(0, new Object[0]).with(a, hashA, shift).with(b, hashB, shift);
+    }
+
+    @Override
+    Stream<Object> elements() {
+      return Arrays.stream(slots)
+          .flatMap(slot -> slot instanceof Node ? ((Node) slot).elements() : Stream.of(slot));
+    }
+  }
+
+  /** A node holding elements whose hashes are equal in all bits. */
+  private static final class Collision extends Node {
+    private final int hash;
+    private final Object[] elements;
+
+    private Collision(int hash, Object[] elements) {
+      this.hash = hash;
+      this.elements = elements;
+    }
+
+    @Override
+    long footprint() {
+      return Footprint.object(1, Integer.BYTES)
+          + Footprint.array(elements.length, Footprint.REFERENCE);
+    }
+
+    @Override
+    boolean contains(Object element, int hash, int shift) {
+      return this.hash == hash && Arrays.asList(elements).contains(element);
+    }
+
+    @Override
+    Node with(Object element, int hash, int shift) {
+      return this.hash == hash
+          ? new Collision(
+              hash, Stream.concat(Arrays.stream(elements), Stream.of(element)).toArray())
+          : new Branch(0, new Object[0]).with(this, this.hash, shift).with(element, hash, shift);
+    }
+
+    @Override
+    Node without(Object element, int hash, int shift) {
+      Object[] remaining = Arrays.stream(elements).filter(e -> !e.equals(element)).toArray();
+      return remaining.length == 0 ? null : new Collision(hash, remaining);
+    }
+
+    @Override
+    Stream<Object> elements() {
+      return Arrays.stream(elements);
+    }
+  }
+}
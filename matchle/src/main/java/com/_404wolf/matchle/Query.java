@@ -0,0 +1,203 @@
+package com._404wolf.matchle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * A crossword-style query over the words of a corpus, parsed from a small pattern language into a
+ * {@link Constraint} so that {@link Corpus} can answer it through its positional index. This class
+ * is immutable.
+ *
+ * <p>A query is a list of terms separated by whitespace, and a word matches if it satisfies every
+ * term:
+ *
+ * <ul>
+ *   <li>a pattern, such as {@code r?d?x} or {@code ??[aei]??}, has one token per position: a letter
+ *       that must appear there, {@code ?} for any letter, or a bracketed set of letters one of
+ *       which must appear there. A pattern also fixes the length of the word, and a query has at
+ *       most one.
+ *   <li>{@code +ae} requires every listed letter to appear somewhere.
+ *   <li>{@code -t} requires every listed letter to be absent.
+ *   <li>{@code 3:[aei]} or {@code 3:a} requires the letter at a position, counted from 1, to be one
+ *       of the listed letters.
+ * </ul>
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * List&lt;NGram&gt; words = corpus.find(Query.parse("r???? +ae -t 3:[aei]"));
+ * </pre>
+ */
+public final class Query {
+  private static final Pattern POSITION = Pattern.compile("(\\d+):(.+)");
+
+  private final String text;
+  private final Constraint constraint;
+  private final OptionalInt length;
+
+  private Query(String text, Constraint constraint, OptionalInt length) {
+    this.text = text;
+    this.constraint = constraint;
+    this.length = length;
+  }
+
+  /**
+   * Parses a query.
+   *
+   * @param text the query, as a list of terms separated by whitespace
+   * @return the parsed query
+   * @throws NullPointerException if the text is null
+   * @throws IllegalArgumentException if the text is not a valid query
+   */
+  public static Query parse(String text) {
+    Objects.requireNonNull(text, "query cannot be null");
+
+    Constraint constraint = Constraint.NONE;
+    OptionalInt length = OptionalInt.empty();
+    for (String term : text.trim().split("\\s+")) {
+      Matcher position = POSITION.matcher(term);
+      if (term.isEmpty()) {
+        continue;
+      } else if (term.charAt(0) == '+') {
+        constraint =
+            letters(term).stream().map(Constraint::required).reduce(constraint, Constraint::and);
+      } else if (term.charAt(0) == '-') {
+        constraint =
+            letters(term).stream().map(Constraint::absent).reduce(constraint, Constraint::and);
+      } else if (position.matches()) {
+        constraint = constraint.and(position(term, position));
+      } else {
+        Optional.of(length)
+            .filter(OptionalInt::isEmpty)
+            .orElseThrow(() -> new IllegalArgumentException("more than one pattern in " + text));
+        List<Optional<Set<Character>>> tokens = tokens(term);
+        constraint = constraint.and(pattern(tokens));
+        length = OptionalInt.of(tokens.size());
+      }
+    }
+    return new Query(text, constraint, length);
+  }
+
+  private static List<Character> letters(String term) {
+    return Optional.of(term.substring(1))
+        .filter(letters -> !letters.isEmpty())
+        .map(letters -> letters.chars().mapToObj(c -> (char) c).collect(Collectors.toList()))
+        .orElseThrow(() -> new IllegalArgumentException("no letters in term " + term));
+  }
+
+  private static Constraint position(String term, Matcher position) {
+    int index =
+        Optional.of(position.group(1))
+                .map(Integer::parseInt)
+                .filter(i -> i >= 1)
+                .orElseThrow(() -> new IllegalArgumentException("positions start at 1 in " + term))
+            - 1;
+    Set<Character> characters =
+        Optional.of(tokens(position.group(2)))
+            .filter(tokens -> tokens.size() == 1)
+            .flatMap(tokens -> tokens.get(0))
+            .orElseThrow(() -> new IllegalArgumentException("expected letters in term " + term));
+    return characters.size() == 1
+        ? Constraint.fixed(new IndexedCharacter(index, characters.iterator().next()))
+        : Constraint.allowed(index, characters);
+  }
+
+  private static Constraint pattern(List<Optional<Set<Character>>> tokens) {
+    Constraint constraint = Constraint.NONE;
+    for (int i = 0; i < tokens.size(); i++) {
+      int index = i;
+      constraint =
+          tokens
+              .get(i)
+              .map(
+                  characters ->
+                      characters.size() == 1
+                          ? Constraint.fixed(
+                              new IndexedCharacter(index, characters.iterator().next()))
+                          : Constraint.allowed(index, characters))
+              .map(constraint::and)
+              .orElse(constraint);
+    }
+    return constraint;
+  }
+
+  /**
+   * Splits a pattern into its tokens: a set of letters for a letter or a bracketed set, or empty
+   * for {@code ?}.
+   */
+  private static List<Optional<Set<Character>>> tokens(String pattern) {
+    List<Optional<Set<Character>>> tokens = new ArrayList<>();
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = pattern.charAt(i);
+      if (c == '?') {
+        tokens.add(Optional.empty());
+      } else if (c == '[') {
+        int start = i + 1;
+        int end = pattern.indexOf(']', start);
+        String set =
+            Optional.of(end)
+                .filter(e -> e > start)
+                .map(e -> pattern.substring(start, e))
+                .orElseThrow(() -> new IllegalArgumentException("bad letter set in " + pattern));
+        tokens.add(Optional.of(set.chars().mapToObj(s -> (char) s).collect(Collectors.toSet())));
+        i = end;
+      } else if (c == ']') {
+        throw new IllegalArgumentException("unopened letter set in " + pattern);
+      } else {
+        tokens.add(Optional.of(Set.of(c)));
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Returns the structured form of this query, without its length.
+   *
+   * @return the constraint every matching word satisfies
+   */
+  Constraint constraint() {
+    return constraint;
+  }
+
+  /**
+   * Returns the length of the matching words, if the query has a pattern.
+   *
+   * @return the length fixed by the pattern, or empty if any length matches
+   */
+  public OptionalInt length() {
+    return length;
+  }
+
+  /**
+   * Returns a filter that passes the n-grams matching this query, for use wherever a filter is
+   * accepted. {@link Corpus#find(Query)} and {@link Corpus#size(Query)} answer the query through
+   * the index instead of testing every n-gram.
+   *
+   * <p>The length fixed by a pattern is not part of the {@link Constraint}, so the filter of a
+   * query with a pattern checks it with a plain predicate. Such a filter has no constraint: it is
+   * always interpreted, and cannot be compiled or sent to a {@link ShardedCorpus}. Code that needs
+   * the structured form uses {@link #constraint()} and checks {@link #length()} itself. The filter
+   * of a query without a pattern is just its constraint.
+   *
+   * @return the filter of this query
+   */
+  public Filter filter() {
+    Filter filter = Filter.of(constraint);
+    return length.isPresent()
+        ? filter.and(Optional.of(Filter.from(ngram -> ngram.size() == length.getAsInt())))
+        : filter;
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
@@ -0,0 +1,23 @@
+package com._404wolf.matchle;
+
+import java.util.Comparator;
+
+/**
+ * A guess with its score: the number of distinct feedback patterns it splits the candidate answers
+ * into. A guess with more patterns leaves fewer candidates on average. This record is immutable.
+ *
+ * @param guess the guess
+ * @param partitions the number of distinct feedback patterns over the candidates
+ * @param candidate whether the guess is itself one of the candidates, and so may win outright
+ */
+public record RankedGuess(NGram guess, int partitions, boolean candidate) {
+  /**
+   * Orders better guesses first. Among guesses with as many patterns, a candidate comes first,
+   * since it may be the answer; remaining ties are broken by the guess's text.
+   */
+  static final Comparator<RankedGuess> BEST_FIRST =
+      Comparator.comparingInt(RankedGuess::partitions)
+          .thenComparing(RankedGuess::candidate)
+          .reversed()
+          .thenComparing(ranked -> ranked.guess().toString());
+}
@@ -0,0 +1,339 @@
+package com._404wolf.matchle;
+
+import com.sun.management.ThreadMXBean;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Replays recorded games against a corpus of answers, to measure realistic traffic rather than
+ * single operations.
+ *
+ * <p>A game log has one game per line: the answer followed by the guesses in the order they were
+ * played, separated by whitespace. Blank lines and lines starting with {@code #} are skipped. Every
+ * game is played as a {@link SessionManager} session: for every guess the feedback pattern is
+ * computed with {@link NGramMatcher#pattern(NGram, NGram)}, the hint filter is built with {@link
+ * NGramMatcher#match()}, and the session's candidates are narrowed through the corpus's word index,
+ * until the answer is guessed.
+ *
+ * <p>Games are taken in log order by a fixed number of concurrent players. At a given rate, game i
+ * is due {@code i / rate} seconds after the start, and its latency is counted from when it was due
+ * rather than from when a player got to it, so a slow build is not hidden by the harness falling
+ * behind. At a rate of 0 the games are played as fast as possible. The {@link Report} gives the
+ * throughput, latency percentiles and bytes allocated per game, and the total of the remaining
+ * candidates, which is the same for every build replaying the same log.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * java -cp target/classes com._404wolf.matchle.Replay answers.txt games.log 8 500
+ * </pre>
+ */
+public final class Replay {
+  private static final String TENANT = "replay";
+
+  /** The allocation counter of the current thread, if the JVM provides one. */
+  private static final Optional<ThreadMXBean> THREADS =
+      Optional.of(ManagementFactory.getThreadMXBean())
+          .filter(ThreadMXBean.class::isInstance)
+          .map(ThreadMXBean.class::cast)
+          .filter(ThreadMXBean::isThreadAllocatedMemorySupported);
+
+  /**
+   * A recorded game.
+   *
+   * @param answer the answer of the game
+   * @param guesses the guesses played, in order
+   */
+  public record Game(NGram answer, List<NGram> guesses) {
+    /**
+     * Creates a game, checking that every guess can be matched against the answer.
+     *
+     * @throws NullPointerException if any argument or guess is null
+     * @throws IllegalArgumentException if a guess has a different size than the answer
+     */
+    public Game {
+      Objects.requireNonNull(answer, "answer cannot be null");
+      guesses = List.copyOf(Objects.requireNonNull(guesses, "guesses cannot be null"));
+      guesses.stream()
+          .filter(guess -> guess.size() != answer.size())
+          .findFirst()
+          .ifPresent(
+              guess -> {
+                throw new IllegalArgumentException(
+                    "guess " + guess + " has a different size than answer " + answer);
+              });
+    }
+  }
+
+  /**
+   * The measurements of a replay. Latency percentiles are taken by the nearest-rank method. This
+   * record is immutable.
+   *
+   * @param games the number of games played
+   * @param guesses the number of guesses played
+   * @param remaining the total number of candidates left at the end of every game
+   * @param elapsed the wall-clock time of the replay
+   * @param p50 the median latency of a game, in nanoseconds
+   * @param p90 the 90th percentile latency of a game, in nanoseconds
+   * @param p99 the 99th percentile latency of a game, in nanoseconds
+   * @param max the highest latency of a game, in nanoseconds
+   * @param allocated the bytes allocated by the players, or -1 if the JVM cannot measure them
+   */
+  public record Report(
+      int games,
+      long guesses,
+      long remaining,
+      Duration elapsed,
+      long p50,
+      long p90,
+      long p99,
+      long max,
+      long allocated) {
+    /**
+     * Returns the number of games played per second.
+     *
+     * @return the throughput of the replay
+     */
+    public double throughput() {
+      return elapsed.isZero() ? 0 : games * 1e9 / elapsed.toNanos();
+    }
+
+    /**
+     * Returns the average bytes allocated per game.
+     *
+     * @return the bytes per game, or -1 if they could not be measured
+     */
+    public long allocatedPerGame() {
+      return allocated < 0 || games == 0 ? -1 : allocated / games;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "games=%d guesses=%d remaining=%d elapsed=%dms throughput=%.1f/s"
+              + " p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms allocated=%dB/game",
+          games,
+          guesses,
+          remaining,
+          elapsed.toMillis(),
+          throughput(),
+          p50 / 1e6,
+          p90 / 1e6,
+          p99 / 1e6,
+          max / 1e6,
+          allocatedPerGame());
+    }
+  }
+
+  private final Corpus answers;
+  private final List<Game> games;
+
+  private Replay(Corpus answers, List<Game> games) {
+    this.answers = answers;
+    this.games = games;
+  }
+
+  /**
+   * Creates a replay of games against a corpus of answers.
+   *
+   * @param answers the answers every game starts with as candidates
+   * @param games the games to play
+   * @return a new Replay
+   * @throws NullPointerException if any argument is null
+   */
+  public static Replay of(Corpus answers, List<Game> games) {
+    Objects.requireNonNull(answers, "answers cannot be null");
+    return new Replay(answers, List.copyOf(Objects.requireNonNull(games, "games cannot be null")));
+  }
+
+  /**
+   * Reads a game log.
+   *
+   * @param log the path of the log
+   * @return the games of the log, in order
+   * @throws IOException if the log cannot be read
+   * @throws IllegalArgumentException if a line is not a valid game
+   */
+  public static List<Game> read(Path log) throws IOException {
+    return parse(Files.readAllLines(log));
+  }
+
+  /**
+   * Parses the lines of a game log.
+   *
+   * @param lines the lines of the log
+   * @return the games of the log, in order
+   * @throws IllegalArgumentException if a line is not a valid game
+   */
+  static List<Game> parse(List<String> lines) {
+    List<Game> games = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i).trim();
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      try {
+        List<NGram> words =
+            Arrays.stream(line.split("\\s+")).map(NGram::from).collect(Collectors.toList());
+        games.add(new Game(words.get(0), words.subList(1, words.size())));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage(), e);
+      }
+    }
+    return games;
+  }
+
+  /**
+   * Replays every game once.
+   *
+   * @param players the number of concurrent players
+   * @param rate the games started per second, or 0 to play as fast as possible
+   * @return the measurements of the replay
+   * @throws IllegalArgumentException if there are no players or the rate is negative
+   * @throws InterruptedException if the caller is interrupted while waiting for the players
+   */
+  public Report run(int players, double rate) throws InterruptedException {
+    Optional.of(players)
+        .filter(p -> p > 0)
+        .orElseThrow(() -> new IllegalArgumentException("players must be positive"));
+    long interval =
+        Optional.of(rate)
+            .filter(r -> r >= 0)
+            .map(r -> r == 0 ? 0L : (long) (1e9 / r))
+            .orElseThrow(() -> new IllegalArgumentException("rate cannot be negative"));
+
+    SessionManager sessions = SessionManager.of(Duration.ofDays(1));
+    AtomicInteger next = new AtomicInteger();
+    long[] latencies = new long[games.size()];
+    long[] remaining = new long[games.size()];
+    LongAdder allocated = new LongAdder();
+    long start = System.nanoTime();
+
+    ExecutorService pool = Executors.newFixedThreadPool(players);
+    try {
+      List<Future<?>> running =
+          IntStream.range(0, players)
+              .mapToObj(
+                  p ->
+                      pool.submit(
+                          () -> {
+                            for (int i = next.getAndIncrement();
+                                i < games.size();
+                                i = next.getAndIncrement()) {
+                              long due = start + i * interval;
+                              for (long wait = due - System.nanoTime();
+                                  wait > 0;
+                                  wait = due - System.nanoTime()) {
+                                LockSupport.parkNanos(wait);
+                              }
+                              long began = interval == 0 ? System.nanoTime() : due;
+                              long bytes = allocatedBytes();
+                              remaining[i] = play(sessions, "game-" + i, games.get(i));
+                              latencies[i] = System.nanoTime() - began;
+                              allocated.add(allocatedBytes() - bytes);
+                            }
+                          }))
+              .collect(Collectors.toList());
+      for (Future<?> player : running) {
+        player.get();
+      }
+    } catch (ExecutionException e) {
+      throw Optional.of(e.getCause())
+          .filter(RuntimeException.class::isInstance)
+          .map(RuntimeException.class::cast)
+          .orElseThrow(() -> new IllegalStateException("player failed", e.getCause()));
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+    Arrays.sort(latencies);
+    return new Report(
+        games.size(),
+        games.stream().mapToLong(game -> game.guesses().size()).sum(),
+        Arrays.stream(remaining).sum(),
+        elapsed,
+        percentile(latencies, 50),
+        percentile(latencies, 90),
+        percentile(latencies, 99),
+        percentile(latencies, 100),
+        THREADS.isPresent() ? allocated.sum() : -1);
+  }
+
+  private static long percentile(long[] sorted, int percentile) {
+    int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+    return sorted.length == 0 ? 0 : sorted[Math.max(0, rank - 1)];
+  }
+
+  /** Plays one game, returning the number of candidates left once it ends. */
+  private int play(SessionManager sessions, String id, Game game) {
+    sessions.open(TENANT, id, answers);
+    try {
+      int remaining = sessions.candidateCount(id);
+      for (NGram guess : game.guesses()) {
+        int pattern = NGramMatcher.pattern(game.answer(), guess);
+        remaining = sessions.narrow(id, NGramMatcher.of(game.answer(), guess).match());
+        if (pattern == 0) {
+          break;
+        }
+      }
+      return remaining;
+    } finally {
+      sessions.close(id);
+    }
+  }
+
+  private static long allocatedBytes() {
+    return THREADS.map(ThreadMXBean::getCurrentThreadAllocatedBytes).orElse(0L);
+  }
+
+  /**
+   * Replays a game log and prints the report. The log is played once as fast as possible to warm up
+   * the JIT compiler, then measured.
+   *
+   * @param args the path of the answers, one word per line, the path of the game log, and
+   *     optionally the number of players, by default the number of processors, and the rate, by
+   *     default 0
+   * @throws IOException if a file cannot be read
+   * @throws InterruptedException if the replay is interrupted
+   */
+  public static void main(String[] args) throws IOException, InterruptedException {
+    Optional.of(args)
+        .filter(a -> a.length >= 2 && a.length <= 4)
+        .orElseThrow(
+            () -> new IllegalArgumentException("usage: Replay answers log [players] [rate]"));
+    int players =
+        args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+    double rate = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    Files.readAllLines(Path.of(args[0])).stream()
+        .map(String::trim)
+        .filter(word -> !word.isEmpty())
+        .map(NGram::from)
+        .forEach(builder::add);
+    Replay replay = Replay.of(builder.build(), read(Path.of(args[1])));
+
+    replay.run(players, 0);
+    System.out.println(replay.run(players, rate));
+  }
+}
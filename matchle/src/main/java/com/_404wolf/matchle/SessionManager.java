@@ -0,0 +1,306 @@
+package com._404wolf.matchle;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * Hosts many concurrent games over shared, immutable corpora.
+ *
+ * <p>Every session refers to its answer {@link Corpus} and the corpus's {@link WordIndex}, which
+ * are shared by all sessions playing on the same corpus. A session only owns its candidate state: a
+ * sorted array of the ids still consistent with its hints, or nothing at all while every word is
+ * still a candidate. Hints are applied with a compare-and-set loop on that array, so sessions never
+ * lock, and concurrent hints for the same session are all applied.
+ *
+ * <p>Sessions that have not been used for longer than the time to live are removed by {@link
+ * #evictIdle()}. The estimated memory of every session is charged to its tenant, and is available
+ * through {@link #memoryUsage(String)}.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * SessionManager sessions = SessionManager.of(Duration.ofMinutes(30));
+ * sessions.open("tenant", "game-1", answers);
+ * long remaining = sessions.narrow("game-1", NGramMatcher.of(key, guess).match());
+ * </pre>
+ */
+public final class SessionManager {
+  /**
+   * The estimated bytes a session costs besides its candidate ids: the session object, its atomic
+   * reference, and its entry in the session map.
+   */
+  static final long SESSION_BYTES = 128;
+
+  private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+  private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+  private final long ttlNanos;
+  private final LongSupplier clock;
+
+  /** The ids of a closed session. Compared by identity, so it never equals a live state. */
+  private static final int[] CLOSED = new int[0];
+
+  /**
+   * The memory account of a tenant, removed from the tenant map once its last session closes.
+   * Sessions charge the account they were opened with, so a charge that races with the removal
+   * lands on the retired account rather than recreating an entry.
+   */
+  private static final class Tenant {
+    private final LongAdder bytes = new LongAdder();
+
+    /** The number of open sessions, only changed inside the tenant map's compute methods. */
+    private int sessions;
+  }
+
+  /** The state of one game. Only {@code ids} and {@code lastAccess} ever change. */
+  private static final class Session {
+    private final String tenant;
+    private final Tenant account;
+    private final Corpus answers;
+
+    /**
+     * The sorted ids of the remaining candidates, null while every answer is a candidate, or {@link
+     * #CLOSED} once the session has been released.
+     */
+    private final AtomicReference<int[]> ids = new AtomicReference<>();
+
+    private volatile long lastAccess;
+
+    private Session(String tenant, Tenant account, Corpus answers, long now) {
+      this.tenant = tenant;
+      this.account = account;
+      this.answers = answers;
+      this.lastAccess = now;
+    }
+
+    private Session touch(long now) {
+      lastAccess = now;
+      return this;
+    }
+  }
+
+  private SessionManager(Duration ttl, LongSupplier clock) {
+    this.ttlNanos = ttl.toNanos();
+    this.clock = clock;
+  }
+
+  /**
+   * Creates a session manager that evicts sessions idle for longer than the given duration.
+   *
+   * @param ttl how long a session may stay unused
+   * @return a new SessionManager
+   * @throws NullPointerException if the duration is null
+   */
+  public static SessionManager of(Duration ttl) {
+    return of(ttl, System::nanoTime);
+  }
+
+  /**
+   * Creates a session manager that reads the time from the given clock.
+   *
+   * @param ttl how long a session may stay unused
+   * @param clock a source of monotonic nanoseconds
+   * @return a new SessionManager
+   * @throws NullPointerException if either argument is null
+   */
+  static SessionManager of(Duration ttl, LongSupplier clock) {
+    Objects.requireNonNull(ttl, "ttl cannot be null");
+    Objects.requireNonNull(clock, "clock cannot be null");
+    return new SessionManager(ttl, clock);
+  }
+
+  /**
+   * Opens a session in which every answer of the corpus is a candidate.
+   *
+   * @param tenant the tenant the session is charged to
+   * @param sessionId the id of the new session
+   * @param answers the shared corpus of possible answers
+   * @throws NullPointerException if any argument is null
+   * @throws IllegalArgumentException if a session with the id is already open
+   */
+  public void open(String tenant, String sessionId, Corpus answers) {
+    Objects.requireNonNull(tenant, "tenant cannot be null");
+    Objects.requireNonNull(sessionId, "sessionId cannot be null");
+    Objects.requireNonNull(answers, "answers cannot be null");
+
+    Tenant account =
+        tenants.compute(
+            tenant,
+            (name, existing) -> {
+              Tenant opened = existing == null ? new Tenant() : existing;
+              opened.sessions++;
+              return opened;
+            });
+    Session session = new Session(tenant, account, answers, clock.getAsLong());
+    Optional.ofNullable(sessions.putIfAbsent(sessionId, session))
+        .ifPresent(
+            existing -> {
+              retire(session);
+              throw new IllegalArgumentException("session already open: " + sessionId);
+            });
+    charge(session, bytes(null));
+  }
+
+  /**
+   * Narrows the candidates of a session by a hint.
+   *
+   * @param sessionId the id of the session
+   * @param hint the filter describing the feedback for a guess
+   * @return the number of remaining candidates
+   * @throws NullPointerException if the hint is null
+   * @throws NoSuchElementException if no session with the id is open, or it closes meanwhile
+   */
+  public int narrow(String sessionId, Filter hint) {
+    Objects.requireNonNull(hint, "hint cannot be null");
+    Session session = session(sessionId);
+    WordIndex index = session.answers.index();
+
+    int[] current;
+    int[] narrowed;
+    do {
+      current = live(session, sessionId);
+      narrowed = ids(current, index).filter(id -> hint.test(index.word(id))).toArray();
+    } while (!session.ids.compareAndSet(current, narrowed));
+
+    charge(session, bytes(narrowed) - bytes(current));
+    return narrowed.length;
+  }
+
+  /**
+   * Returns the number of remaining candidates of a session.
+   *
+   * @param sessionId the id of the session
+   * @return the number of remaining candidates
+   * @throws NoSuchElementException if no session with the id is open
+   */
+  public int candidateCount(String sessionId) {
+    Session session = session(sessionId);
+    return (int) ids(live(session, sessionId), session.answers.index()).count();
+  }
+
+  /**
+   * Returns the remaining candidates of a session.
+   *
+   * @param sessionId the id of the session
+   * @return a Corpus of the remaining candidates
+   * @throws NoSuchElementException if no session with the id is open
+   */
+  public Corpus candidates(String sessionId) {
+    Session session = session(sessionId);
+    WordIndex index = session.answers.index();
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    ids(live(session, sessionId), index).mapToObj(index::word).forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Closes a session and releases its memory.
+   *
+   * @param sessionId the id of the session
+   * @return true if the session was open, false otherwise
+   */
+  public boolean close(String sessionId) {
+    return Optional.ofNullable(sessions.remove(sessionId)).map(this::release).isPresent();
+  }
+
+  /**
+   * Closes every session that has been idle for longer than the time to live.
+   *
+   * @return the number of sessions closed
+   */
+  public int evictIdle() {
+    long now = clock.getAsLong();
+    return (int)
+        sessions.entrySet().stream()
+            .filter(entry -> now - entry.getValue().lastAccess > ttlNanos)
+            .filter(entry -> sessions.remove(entry.getKey(), entry.getValue()))
+            .map(entry -> release(entry.getValue()))
+            .count();
+  }
+
+  /**
+   * Returns the number of open sessions.
+   *
+   * @return the number of open sessions
+   */
+  public int sessionCount() {
+    return sessions.size();
+  }
+
+  /**
+   * Returns the number of tenants with open sessions.
+   *
+   * @return the number of tenants
+   */
+  int tenantCount() {
+    return tenants.size();
+  }
+
+  /**
+   * Returns the estimated memory held by the open sessions of a tenant. Shared corpora and indexes
+   * are not charged to any tenant.
+   *
+   * @param tenant the tenant
+   * @return the estimated number of bytes
+   */
+  public long memoryUsage(String tenant) {
+    return Optional.ofNullable(tenants.get(tenant)).map(account -> account.bytes.sum()).orElse(0L);
+  }
+
+  private Session session(String sessionId) {
+    return Optional.ofNullable(sessions.get(sessionId))
+        .map(session -> session.touch(clock.getAsLong()))
+        .orElseThrow(() -> new NoSuchElementException("no such session: " + sessionId));
+  }
+
+  /** Returns the ids of a session, failing if it was closed after it was looked up. */
+  private static int[] live(Session session, String sessionId) {
+    int[] ids = session.ids.get();
+    if (ids == CLOSED) {
+      throw new NoSuchElementException("no such session: " + sessionId);
+    }
+    return ids;
+  }
+
+  /**
+   * Marks a session closed and refunds its memory. The ids are swapped for the tombstone in one
+   * step, so a concurrent {@link #narrow} either finishes first and is refunded here, or fails its
+   * compare-and-set and never charges a closed session.
+   */
+  private Session release(Session session) {
+    int[] last = session.ids.getAndSet(CLOSED);
+    if (last != CLOSED) {
+      charge(session, -bytes(last));
+      retire(session);
+    }
+    return session;
+  }
+
+  /** Removes the session from its tenant's count, dropping the tenant once it has none left. */
+  private void retire(Session session) {
+    tenants.computeIfPresent(
+        session.tenant,
+        (name, account) -> account == session.account && --account.sessions == 0 ? null : account);
+  }
+
+  private void charge(Session session, long bytes) {
+    session.account.bytes.add(bytes);
+  }
+
+  private static IntStream ids(int[] ids, WordIndex index) {
+    return ids == null ? IntStream.range(0, index.size()) : Arrays.stream(ids);
+  }
+
+  private static long bytes(int[] ids) {
+    return SESSION_BYTES + (ids == null ? 0 : 16 + 4L * ids.length);
+  }
+}
@@ -0,0 +1,134 @@
+package com._404wolf.matchle;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The binary protocol between a {@link ShardedCorpus} coordinator and its {@link ShardServer}
+ * workers.
+ *
+ * <p>Every request is an opcode byte followed by its arguments, and is answered before the next
+ * request is sent:
+ *
+ * <ul>
+ *   <li>{@code LOAD}: a word list, answered with {@code OK}, replaces the shard's words
+ *   <li>{@code COUNT}: a constraint, answered with the number of matching words as a long
+ *   <li>{@code MATCHES}: a constraint, answered with the matching words as a word list
+ *   <li>{@code PARTITION}: a guess, answered with an int count of entries, then for every feedback
+ *       pattern of the guess an int pattern and a long count
+ *   <li>{@code QUIT}: answered with {@code OK}, stops the worker
+ * </ul>
+ *
+ * <p>A word list is an int count followed by the words as modified UTF-8 strings. A constraint is
+ * its fixed characters, its elsewhere characters, each as an int count followed by int index and
+ * char pairs, its absent characters as an int count followed by chars, its allowed characters as an
+ * int count of indices followed for each by the int index and its characters, and its required
+ * characters as an int count followed by chars.
+ *
+ * <p>Malformed input, such as a negative count, is reported as a {@link ProtocolException}.
+ */
+final class ShardProtocol {
+  static final byte LOAD = 1;
+  static final byte COUNT = 2;
+  static final byte MATCHES = 3;
+  static final byte PARTITION = 4;
+  static final byte QUIT = 5;
+  static final byte OK = 0;
+
+  private ShardProtocol() {}
+
+  static void writeWords(DataOutputStream out, Collection<NGram> words) throws IOException {
+    out.writeInt(words.size());
+    for (NGram word : words) {
+      out.writeUTF(word.toString());
+    }
+  }
+
+  static List<NGram> readWords(DataInputStream in) throws IOException {
+    int count = readCount(in);
+    List<NGram> words = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      words.add(NGram.from(in.readUTF()));
+    }
+    return words;
+  }
+
+  /**
+   * Reads a count. Lists are not presized by it, so a corrupt count fails at the end of the stream
+   * rather than by allocating.
+   */
+  private static int readCount(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    if (count < 0) {
+      throw new ProtocolException("negative count: " + count);
+    }
+    return count;
+  }
+
+  static void writeConstraint(DataOutputStream out, Constraint constraint) throws IOException {
+    writeIndexed(out, constraint.fixed());
+    writeIndexed(out, constraint.elsewhere());
+    writeCharacters(out, constraint.absent());
+    out.writeInt(constraint.allowed().size());
+    for (Map.Entry<Integer, Set<Character>> entry : constraint.allowed().entrySet()) {
+      out.writeInt(entry.getKey());
+      writeCharacters(out, entry.getValue());
+    }
+    writeCharacters(out, constraint.required());
+  }
+
+  static Constraint readConstraint(DataInputStream in) throws IOException {
+    Set<IndexedCharacter> fixed = readIndexed(in);
+    Set<IndexedCharacter> elsewhere = readIndexed(in);
+    Set<Character> absent = readCharacters(in);
+    int indices = readCount(in);
+    Map<Integer, Set<Character>> allowed = new HashMap<>();
+    for (int i = 0; i < indices; i++) {
+      allowed.put(in.readInt(), readCharacters(in));
+    }
+    return new Constraint(fixed, elsewhere, absent, allowed, readCharacters(in));
+  }
+
+  private static void writeCharacters(DataOutputStream out, Set<Character> characters)
+      throws IOException {
+    out.writeInt(characters.size());
+    for (char c : characters) {
+      out.writeChar(c);
+    }
+  }
+
+  private static Set<Character> readCharacters(DataInputStream in) throws IOException {
+    int count = readCount(in);
+    List<Character> characters = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      characters.add(in.readChar());
+    }
+    return Set.copyOf(characters);
+  }
+
+  private static void writeIndexed(DataOutputStream out, Set<IndexedCharacter> characters)
+      throws IOException {
+    out.writeInt(characters.size());
+    for (IndexedCharacter c : characters) {
+      out.writeInt(c.index());
+      out.writeChar(c.character());
+    }
+  }
+
+  private static Set<IndexedCharacter> readIndexed(DataInputStream in) throws IOException {
+    int count = readCount(in);
+    List<IndexedCharacter> characters = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      characters.add(new IndexedCharacter(in.readInt(), in.readChar()));
+    }
+    return Set.copyOf(characters);
+  }
+}
@@ -0,0 +1,149 @@
+package com._404wolf.matchle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * A worker process holding one shard of a {@link ShardedCorpus}. The worker listens on a Unix
+ * domain socket, serves one coordinator connection at a time using the {@link ShardProtocol}, and
+ * exits when asked to quit. A connection that sends a malformed request, a load of empty or
+ * differently sized words, or a query before any load is closed, and the worker keeps its shard and
+ * goes on accepting connections.
+ *
+ * <h2>Usage</h2>
+ *
+ * <pre>
+ *
+ * java -cp matchle.jar com._404wolf.matchle.ShardServer /tmp/matchle-shard-0.sock
+ * </pre>
+ */
+public final class ShardServer {
+  /** The loaded words, or null before the first load. */
+  private Corpus shard;
+
+  private ShardServer() {}
+
+  /**
+   * Runs a worker listening on the socket path given as the only argument.
+   *
+   * @param args the path of the socket to listen on
+   * @throws IOException if the socket cannot be bound
+   */
+  public static void main(String[] args) throws IOException {
+    Path path = Path.of(args[0]);
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(path));
+      new ShardServer().serve(server);
+    } finally {
+      Files.deleteIfExists(path);
+    }
+  }
+
+  /**
+   * Accepts connections until one asks the worker to quit. A connection that fails, for example on
+   * an unknown opcode or malformed input, is closed and the worker waits for the next one.
+   */
+  private void serve(ServerSocketChannel server) throws IOException {
+    boolean running = true;
+    while (running) {
+      SocketChannel accepted = server.accept();
+      try (SocketChannel channel = accepted) {
+        running =
+            serve(
+                new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))),
+                new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel))));
+      } catch (IOException | RuntimeException e) {
+        // only this connection is lost
+      }
+    }
+  }
+
+  /** Serves one connection, returning false once the coordinator asks the worker to quit. */
+  private boolean serve(DataInputStream in, DataOutputStream out) throws IOException {
+    try {
+      while (true) {
+        byte opcode = in.readByte();
+        if (opcode == ShardProtocol.QUIT) {
+          out.writeByte(ShardProtocol.OK);
+          out.flush();
+          return false;
+        }
+        handle(opcode, in, out);
+        out.flush();
+      }
+    } catch (EOFException e) {
+      return true;
+    }
+  }
+
+  private void handle(byte opcode, DataInputStream in, DataOutputStream out) throws IOException {
+    switch (opcode) {
+      case ShardProtocol.LOAD:
+        shard = load(ShardProtocol.readWords(in));
+        out.writeByte(ShardProtocol.OK);
+        break;
+      case ShardProtocol.COUNT:
+        out.writeLong(loaded().size(Filter.of(ShardProtocol.readConstraint(in))));
+        break;
+      case ShardProtocol.MATCHES:
+        Filter filter = Filter.of(ShardProtocol.readConstraint(in));
+        ShardProtocol.writeWords(
+            out, loaded().getCorpus().stream().filter(filter::test).collect(Collectors.toList()));
+        break;
+      case ShardProtocol.PARTITION:
+        writePartition(out, partition(NGram.from(in.readUTF())));
+        break;
+      default:
+        throw new IOException("unknown opcode: " + opcode);
+    }
+  }
+
+  /** Builds a shard from loaded words, which must be nonempty and all of one size. */
+  private static Corpus load(List<NGram> words) throws ProtocolException {
+    if (words.stream().anyMatch(word -> word.size() == 0)) {
+      throw new ProtocolException("cannot load an empty word");
+    }
+    return Optional.ofNullable(Corpus.Builder.EMPTY().addAll(words).build())
+        .orElseThrow(() -> new ProtocolException("cannot load words of different sizes"));
+  }
+
+  private Corpus loaded() throws ProtocolException {
+    if (shard == null) {
+      throw new ProtocolException("no words loaded");
+    }
+    return shard;
+  }
+
+  private Map<Integer, Long> partition(NGram guess) throws ProtocolException {
+    return loaded().getCorpus().stream()
+        .filter(word -> word.size() == guess.size())
+        .collect(
+            Collectors.groupingBy(
+                word -> NGramMatcher.pattern(word, guess), Collectors.counting()));
+  }
+
+  private static void writePartition(DataOutputStream out, Map<Integer, Long> partition)
+      throws IOException {
+    out.writeInt(partition.size());
+    for (Map.Entry<Integer, Long> entry : partition.entrySet()) {
+      out.writeInt(entry.getKey());
+      out.writeLong(entry.getValue());
+    }
+  }
+}
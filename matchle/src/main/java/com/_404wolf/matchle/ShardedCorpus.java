@@ -0,0 +1,285 @@
+package com._404wolf.matchle;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A corpus split by word id range across {@link ShardServer} worker processes.
+ *
+ * <p>The coordinator assigns every worker a contiguous range of the ids of the corpus's {@link
+ * WordIndex} and loads it with those words. Queries are broadcast to all workers at once over Unix
+ * domain sockets using the {@link ShardProtocol}, and the partial answers are merged. Since a
+ * {@link Filter} predicate cannot be sent to another process, filters must have a {@link
+ * Constraint}, as those built by {@link NGramMatcher} do.
+ *
+ * <h2>Example</h2>
+ *
+ * <pre>
+ *
+ * try (ShardedCorpus sharded = ShardedCorpus.of(corpus, sockets)) {
+ *   long count = sharded.size(NGramMatcher.of(key, guess).match());
+ * }
+ * </pre>
+ */
+final class ShardedCorpus implements AutoCloseable {
+  private final List<Shard> shards;
+  private final ExecutorService executor;
+
+  /** A connection to one worker. Requests on a connection are serialized. */
+  private static final class Shard {
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private Shard(SocketChannel channel) {
+      this.channel = channel;
+      this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+      this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+  }
+
+  /** A request sent to one shard, reading the shard's answer. */
+  @FunctionalInterface
+  private interface Request<T> {
+    T send(DataInputStream in, DataOutputStream out) throws IOException;
+  }
+
+  private ShardedCorpus(List<Shard> shards) {
+    this.shards = shards;
+    this.executor =
+        Executors.newFixedThreadPool(
+            shards.size(),
+            task -> {
+              Thread thread = new Thread(task, "matchle-shard-client");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Connects to running workers and loads each with its range of the corpus.
+   *
+   * @param corpus the corpus to shard
+   * @param sockets the socket paths of the workers, one per shard
+   * @return a new ShardedCorpus
+   * @throws NullPointerException if either argument is null
+   * @throws IllegalArgumentException if no sockets are given
+   * @throws UncheckedIOException if a worker cannot be reached or loaded, in which case every
+   *     connection already opened is closed
+   */
+  static ShardedCorpus of(Corpus corpus, List<Path> sockets) {
+    Objects.requireNonNull(corpus, "corpus cannot be null");
+    Objects.requireNonNull(sockets, "sockets cannot be null");
+    Optional.of(sockets)
+        .filter(list -> !list.isEmpty())
+        .orElseThrow(() -> new IllegalArgumentException("at least one shard is required"));
+
+    List<Shard> shards = new ArrayList<>();
+    try {
+      sockets.forEach(socket -> shards.add(connect(socket)));
+    } catch (RuntimeException e) {
+      shards.forEach(ShardedCorpus::disconnect);
+      throw e;
+    }
+
+    ShardedCorpus sharded = new ShardedCorpus(shards);
+    try {
+      WordIndex index = corpus.index();
+      sharded.broadcast(shard -> (in, out) -> load(in, out, range(index, shard, sockets.size())));
+      return sharded;
+    } catch (RuntimeException e) {
+      shards.forEach(ShardedCorpus::disconnect);
+      sharded.executor.shutdownNow();
+      throw e;
+    }
+  }
+
+  /**
+   * Counts the words of all shards that pass the filter.
+   *
+   * @param filter a filter with a constraint
+   * @return the number of matching words
+   * @throws IllegalArgumentException if the filter has no constraint
+   */
+  long size(Filter filter) {
+    Constraint constraint = constraint(filter);
+    return broadcast(
+            shard ->
+                (in, out) -> {
+                  out.writeByte(ShardProtocol.COUNT);
+                  ShardProtocol.writeConstraint(out, constraint);
+                  out.flush();
+                  return in.readLong();
+                })
+        .stream()
+        .mapToLong(Long::longValue)
+        .sum();
+  }
+
+  /**
+   * Collects the words of all shards that pass the filter.
+   *
+   * @param filter a filter with a constraint
+   * @return the matching words
+   * @throws IllegalArgumentException if the filter has no constraint
+   */
+  Set<NGram> matches(Filter filter) {
+    Constraint constraint = constraint(filter);
+    Set<NGram> matches = new HashSet<>();
+    broadcast(
+            shard ->
+                (in, out) -> {
+                  out.writeByte(ShardProtocol.MATCHES);
+                  ShardProtocol.writeConstraint(out, constraint);
+                  out.flush();
+                  return ShardProtocol.readWords(in);
+                })
+        .forEach(matches::addAll);
+    return matches;
+  }
+
+  /**
+   * Partitions the words of all shards by their feedback pattern for a guess, as computed by {@link
+   * NGramMatcher#pattern(NGram, NGram)}.
+   *
+   * @param guess the guess to partition by
+   * @return the number of words for every pattern that occurs
+   */
+  Map<Integer, Long> partition(NGram guess) {
+    Objects.requireNonNull(guess, "guess cannot be null");
+    Map<Integer, Long> partition = new HashMap<>();
+    broadcast(
+            shard ->
+                (in, out) -> {
+                  out.writeByte(ShardProtocol.PARTITION);
+                  out.writeUTF(guess.toString());
+                  out.flush();
+                  return readPartition(in);
+                })
+        .forEach(
+            part -> part.forEach((pattern, count) -> partition.merge(pattern, count, Long::sum)));
+    return partition;
+  }
+
+  /** Asks every worker to quit and closes the connections. */
+  @Override
+  public void close() {
+    try {
+      broadcast(
+          shard ->
+              (in, out) -> {
+                out.writeByte(ShardProtocol.QUIT);
+                out.flush();
+                return in.readByte();
+              });
+    } finally {
+      shards.forEach(ShardedCorpus::disconnect);
+      executor.shutdown();
+    }
+  }
+
+  /** Sends a request to every shard in parallel and waits for all answers, in shard order. */
+  private <T> List<T> broadcast(IntFunction<Request<T>> requests) {
+    List<CompletableFuture<T>> answers =
+        IntStream.range(0, shards.size())
+            .mapToObj(
+                i -> CompletableFuture.supplyAsync(() -> send(i, requests.apply(i)), executor))
+            .collect(Collectors.toList());
+    try {
+      return answers.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    } catch (CompletionException e) {
+      throw Optional.of(e.getCause())
+          .filter(RuntimeException.class::isInstance)
+          .map(RuntimeException.class::cast)
+          .orElse(e);
+    }
+  }
+
+  private <T> T send(int i, Request<T> request) {
+    Shard shard = shards.get(i);
+    synchronized (shard) {
+      try {
+        return request.send(shard.in, shard.out);
+      } catch (IOException e) {
+        throw new UncheckedIOException("shard " + i + " failed", e);
+      }
+    }
+  }
+
+  private static Byte load(DataInputStream in, DataOutputStream out, List<NGram> words)
+      throws IOException {
+    out.writeByte(ShardProtocol.LOAD);
+    ShardProtocol.writeWords(out, words);
+    out.flush();
+    return in.readByte();
+  }
+
+  /** Returns the words with ids in the shard's range: an even split of the id space. */
+  private static List<NGram> range(WordIndex index, int shard, int shards) {
+    long from = (long) index.size() * shard / shards;
+    long to = (long) index.size() * (shard + 1) / shards;
+    List<NGram> words = new ArrayList<>();
+    for (long id = from; id < to; id++) {
+      words.add(index.word((int) id));
+    }
+    return words;
+  }
+
+  private static Map<Integer, Long> readPartition(DataInputStream in) throws IOException {
+    int entries = in.readInt();
+    Map<Integer, Long> partition = new HashMap<>();
+    for (int i = 0; i < entries; i++) {
+      partition.put(in.readInt(), in.readLong());
+    }
+    return partition;
+  }
+
+  private static Constraint constraint(Filter filter) {
+    Objects.requireNonNull(filter, "filter cannot be null");
+    return filter
+        .constraint()
+        .orElseThrow(() -> new IllegalArgumentException("filter has no constraint to send"));
+  }
+
+  private static Shard connect(Path socket) {
+    try {
+      SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+      channel.connect(UnixDomainSocketAddress.of(socket));
+      return new Shard(channel);
+    } catch (IOException e) {
+      throw new UncheckedIOException("cannot connect to " + socket, e);
+    }
+  }
+
+  private static void disconnect(Shard shard) {
+    try {
+      shard.channel.close();
+    } catch (IOException e) {
+      // the connection is gone either way
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package com._404wolf.matchle;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates many filters in one pass over a {@link WordIndex}.
+ *
+ * <p>The words are visited in blocks of {@link #BLOCK} ids. Each block is decoded once into arrays
+ * of packed words and letter masks, which stay in cache while every filter is tested against them,
+ * so the words are read from memory once per block rather than once per filter. Filters with a
+ * compilable {@link Constraint} are tested on the packed arrays by their {@link PackedPredicate};
+ * other filters, and words outside the alphabet, are tested on the n-grams. Blocks are independent
+ * and can be scanned in parallel; since a block covers whole 64-bit words of every result bitset,
+ * no two blocks write to the same result word.
+ */
+final class SharedScan {
+  /** The number of words in a block, a multiple of 64. */
+  static final int BLOCK = 1 << 10;
+
+  private final WordIndex index;
+  private final Alphabet alphabet;
+  private final List<Query> queries;
+
+  /**
+   * One filter of the batch.
+   *
+   * @param filter the filter
+   * @param predicate the compiled form of the filter for packed words, or null to always test the
+   *     filter itself
+   */
+  private record Query(Filter filter, PackedPredicate predicate) {
+    boolean test(NGram word, long packed, long letters) {
+      return predicate != null && packed >= 0 ? predicate.test(packed, letters) : filter.test(word);
+    }
+  }
+
+  private SharedScan(WordIndex index, Alphabet alphabet, List<Query> queries) {
+    this.index = index;
+    this.alphabet = alphabet;
+    this.queries = queries;
+  }
+
+  /**
+   * Prepares a batch of filters for scanning the index.
+   *
+   * @param index the words to scan
+   * @param alphabet the alphabet to pack the words with
+   * @param filters the filters to evaluate
+   * @param compile whether to compile the filters that can be compiled
+   * @return a new SharedScan
+   * @throws NullPointerException if a filter is null
+   */
+  static SharedScan of(WordIndex index, Alphabet alphabet, List<Filter> filters, boolean compile) {
+    int wordSize = index.size() == 0 ? 0 : index.word(0).size();
+    return new SharedScan(
+        index,
+        alphabet,
+        filters.stream()
+            .map(filter -> Objects.requireNonNull(filter, "filter cannot be null"))
+            .map(filter -> new Query(filter, compile ? compiled(filter, alphabet, wordSize) : null))
+            .collect(Collectors.toUnmodifiableList()));
+  }
+
+  private static PackedPredicate compiled(Filter filter, Alphabet alphabet, int wordSize) {
+    return filter
+        .constraint()
+        .filter(constraint -> FilterCompiler.isCompilable(constraint, alphabet, wordSize))
+        .map(constraint -> FilterCompiler.predicate(constraint, alphabet, wordSize))
+        .orElse(null);
+  }
+
+  /**
+   * Counts the words that pass each filter.
+   *
+   * @param parallel whether to scan blocks in parallel
+   * @return the count of every filter, in the order of the filters
+   */
+  long[] counts(boolean parallel) {
+    return blocks(parallel)
+        .mapToObj(
+            block -> {
+              long[] counts = new long[queries.size()];
+              scan(block, (query, id) -> counts[query]++);
+              return counts;
+            })
+        .reduce(new long[queries.size()], SharedScan::sum);
+  }
+
+  /**
+   * Finds the ids of the words that pass each filter.
+   *
+   * @param parallel whether to scan blocks in parallel
+   * @return a bitset of ids for every filter, in the order of the filters
+   */
+  List<BitSet> members(boolean parallel) {
+    long[][] members = new long[queries.size()][(index.size() + Long.SIZE - 1) / Long.SIZE];
+    blocks(parallel)
+        .forEach(block -> scan(block, (query, id) -> members[query][id >>> 6] |= 1L << id));
+    return IntStream.range(0, members.length)
+        .mapToObj(query -> BitSet.valueOf(members[query]))
+        .collect(Collectors.toList());
+  }
+
+  /** Receives the id of every word that passes a query. */
+  @FunctionalInterface
+  private interface Hits {
+    void hit(int query, int id);
+  }
+
+  private IntStream blocks(boolean parallel) {
+    IntStream blocks = IntStream.range(0, (index.size() + BLOCK - 1) / BLOCK);
+    return parallel ? blocks.parallel() : blocks;
+  }
+
+  /** Decodes one block and tests every query against it. */
+  private void scan(int block, Hits hits) {
+    int from = block * BLOCK;
+    int length = Math.min(BLOCK, index.size() - from);
+    NGram[] words = new NGram[length];
+    long[] packed = new long[length];
+    long[] letters = new long[length];
+    for (int i = 0; i < length; i++) {
+      words[i] = index.word(from + i);
+      packed[i] = words[i].packed(alphabet);
+      letters[i] = words[i].letters(alphabet);
+    }
+
+    for (int query = 0; query < queries.size(); query++) {
+      Query q = queries.get(query);
+      for (int i = 0; i < length; i++) {
+        if (q.test(words[i], packed[i], letters[i])) {
+          hits.hit(query, from + i);
+        }
+      }
+    }
+  }
+
+  private static long[] sum(long[] a, long[] b) {
+    long[] sum = new long[a.length];
+    Arrays.setAll(sum, i -> a[i] + b[i]);
+    return sum;
+  }
+}
@@ -0,0 +1,283 @@
+package com._404wolf.matchle;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Assigns every n-gram of a word list a dense integer id, so that subsets of the list can be
+ * represented as {@link BitSet}s over one shared numbering. Ids follow the lexicographic order of
+ * the words, which makes them stable for a given set of words. This class is immutable.
+ *
+ * <p>The index also provides a positional index, built on first use, that lists for every position
+ * and character the ids of the words with that character at that position.
+ */
+final class WordIndex {
+  private static final int[] NO_IDS = {};
+
+  /** The indexed n-grams, positioned by their id. */
+  private final NGram[] words;
+
+  /** The reverse lookup from n-gram to id. */
+  private final Map<NGram, Integer> ids;
+
+  /** For every position, the sorted ids of the words grouped by their character there. */
+  private volatile List<Map<Character, int[]>> positional;
+
+  private WordIndex(NGram[] words) {
+    this.words = words;
+    this.ids = new HashMap<>();
+    IntStream.range(0, words.length).forEach(id -> ids.put(words[id], id));
+  }
+
+  /**
+   * Creates an index over the given n-grams. Duplicate n-grams share one id.
+   *
+   * @param ngrams the n-grams to index
+   * @return a new WordIndex
+   * @throws NullPointerException if the collection is null
+   */
+  static WordIndex of(Collection<NGram> ngrams) {
+    Objects.requireNonNull(ngrams, "ngrams cannot be null");
+
+    return new WordIndex(
+        ngrams.stream()
+            .filter(Objects::nonNull)
+            .distinct()
+            .sorted(WordIndex::compare)
+            .toArray(NGram[]::new));
+  }
+
+  /**
+   * Orders n-grams as their text would be ordered, comparing them character by character instead of
+   * building their strings on every comparison.
+   */
+  private static int compare(NGram a, NGram b) {
+    int common = Math.min(a.size(), b.size());
+    for (int i = 0; i < common; i++) {
+      int order = Character.compare(a.get(i), b.get(i));
+      if (order != 0) {
+        return order;
+      }
+    }
+    return Integer.compare(a.size(), b.size());
+  }
+
+  /**
+   * Returns the number of indexed n-grams.
+   *
+   * @return the number of indexed n-grams
+   */
+  int size() {
+    return words.length;
+  }
+
+  /**
+   * Returns the n-gram with the given id.
+   *
+   * @param id the id of the n-gram
+   * @return the n-gram with the given id
+   * @throws IndexOutOfBoundsException if the id is out of range
+   */
+  NGram word(int id) {
+    return words[Objects.checkIndex(id, words.length)];
+  }
+
+  /**
+   * Looks up the id of an n-gram. This costs one hash of the n-gram, which is linear in its length.
+   *
+   * @param ngram the n-gram to look up
+   * @return the id of the n-gram, or empty if it is not indexed
+   */
+  Optional<Integer> id(NGram ngram) {
+    return Optional.ofNullable(ids.get(ngram));
+  }
+
+  /**
+   * Returns the positional index: for every position, the sorted ids of the words grouped by their
+   * character at that position. Words shorter than a position are absent from its groups.
+   *
+   * @return the positional index, one map per position
+   */
+  List<Map<Character, int[]>> positional() {
+    List<Map<Character, int[]>> built = positional;
+    if (built == null) {
+      int maxSize = IntStream.range(0, words.length).map(id -> words[id].size()).max().orElse(0);
+      built =
+          IntStream.range(0, maxSize)
+              .mapToObj(this::groupByCharacterAt)
+              .collect(Collectors.toUnmodifiableList());
+      positional = built;
+    }
+    return built;
+  }
+
+  /**
+   * Returns the positional index if it has been built, without building it.
+   *
+   * @return the positional index, or empty if it has not been built yet
+   */
+  Optional<List<Map<Character, int[]>>> positionalIfBuilt() {
+    return Optional.ofNullable(positional);
+  }
+
+  /**
+   * Returns the sorted ids of the words with the given character at the given index. The returned
+   * array is shared and must not be modified.
+   *
+   * @param c the character and its index
+   * @return the ids of the matching words, possibly empty
+   */
+  int[] postings(IndexedCharacter c) {
+    List<Map<Character, int[]>> index = positional();
+    return c.index() >= 0 && c.index() < index.size()
+        ? index.get(c.index()).getOrDefault(c.character(), NO_IDS)
+        : NO_IDS;
+  }
+
+  private Map<Character, int[]> groupByCharacterAt(int position) {
+    return Map.copyOf(
+        IntStream.range(0, words.length)
+            .filter(id -> words[id].size() > position)
+            .boxed()
+            .collect(
+                Collectors.groupingBy(
+                    id -> words[id].get(position),
+                    Collectors.collectingAndThen(
+                        Collectors.toList(),
+                        list -> list.stream().mapToInt(Integer::intValue).toArray()))));
+  }
+
+  /**
+   * Returns the ids of the words that satisfy a constraint, answered through the positional index.
+   * The fixed character or allowed set with the shortest postings yields the candidates, and only
+   * those are tested against the whole constraint, so a selective constraint costs time close to
+   * the size of its result rather than of the index. A constraint that restricts no position is
+   * tested against every word.
+   *
+   * @param constraint the constraint to select the words of
+   * @return a BitSet with the ids of the matching words set
+   * @throws NullPointerException if the constraint is null
+   */
+  BitSet select(Constraint constraint) {
+    Objects.requireNonNull(constraint, "constraint cannot be null");
+
+    BitSet selected = new BitSet(words.length);
+    Stream.concat(
+            constraint.fixed().stream().map(c -> List.of(postings(c))),
+            constraint.allowed().entrySet().stream()
+                .map(
+                    entry ->
+                        entry.getValue().stream()
+                            .map(c -> postings(new IndexedCharacter(entry.getKey(), c)))
+                            .collect(Collectors.toList())))
+        .min(Comparator.comparingLong(WordIndex::count))
+        .map(candidates -> candidates.stream().flatMapToInt(Arrays::stream))
+        .orElseGet(() -> IntStream.range(0, words.length))
+        .filter(id -> constraint.test(words[id]))
+        .forEach(selected::set);
+    return selected;
+  }
+
+  private static long count(List<int[]> postings) {
+    return postings.stream().mapToLong(ids -> ids.length).sum();
+  }
+
+  /**
+   * Returns the ids of the given n-grams that are indexed.
+   *
+   * @param ngrams the n-grams to look up
+   * @return a BitSet with the ids of the indexed n-grams set
+   */
+  BitSet ids(Iterable<NGram> ngrams) {
+    BitSet selected = new BitSet(words.length);
+    ngrams.forEach(ngram -> id(ngram).ifPresent(selected::set));
+    return selected;
+  }
+
+  /**
+   * Returns the ids among {@code within} whose n-grams fail the filter. Only the ids in {@code
+   * within} are tested, so narrowing an already small set stays cheap.
+   *
+   * @param filter the filter to test the n-grams against
+   * @param within the ids to test
+   * @return a BitSet with the ids of the rejected n-grams set
+   */
+  BitSet rejected(Filter filter, BitSet within) {
+    BitSet rejected = new BitSet(words.length);
+    within.stream().filter(id -> !filter.test(words[id])).forEach(rejected::set);
+    return rejected;
+  }
+
+  /**
+   * Returns the bytes of this index, excluding the n-grams, as laid out by {@link Footprint}. The
+   * positional index only counts once it has been built.
+   *
+   * @return the footprint of this index
+   */
+  long footprint() {
+    long bytes =
+        Footprint.object(3, 0)
+            + Footprint.array(words.length, Footprint.REFERENCE)
+            + Footprint.hashMap(words.length)
+            + Footprint.boxedIntegers(words.length);
+    List<Map<Character, int[]>> built = positional;
+    return built == null
+        ? bytes
+        : bytes
+            + Footprint.object(1, 1)
+            + Footprint.array(built.size(), Footprint.REFERENCE)
+            + built.stream()
+                .mapToLong(
+                    groups ->
+                        Footprint.immutableMap(groups.size())
+                            + groups.values().stream()
+                                .mapToLong(ids -> Footprint.array(ids.length, Integer.BYTES))
+                                .sum())
+                .sum();
+  }
+
+  /**
+   * Estimates the bytes of the index of n words of the given size, with its positional index built,
+   * assuming every position uses the whole alphabet.
+   *
+   * @param n the number of words
+   * @param wordSize the size of the words
+   * @return the expected footprint of the index
+   */
+  static long estimate(long n, int wordSize) {
+    long groups = Math.min(n, 26);
+    long perPosition =
+        Footprint.immutableMap(groups)
+            + groups * (Footprint.ARRAY_HEADER + Footprint.ALIGNMENT / 2)
+            + n * Integer.BYTES;
+    return Footprint.object(3, 0)
+        + Footprint.array(n, Footprint.REFERENCE)
+        + Footprint.hashMap(n)
+        + Footprint.boxedIntegers(n)
+        + Footprint.object(1, 1)
+        + Footprint.array(wordSize, Footprint.REFERENCE)
+        + wordSize * perPosition;
+  }
+
+  /**
+   * Builds a Corpus from the n-grams with the given ids.
+   *
+   * @param selected the ids of the n-grams to include
+   * @return a Corpus of the selected n-grams
+   */
+  Corpus corpus(BitSet selected) {
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    selected.stream().mapToObj(id -> words[id]).forEach(builder::add);
+    return builder.build();
+  }
+}
@@ -0,0 +1,106 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConjunctionTest {
+
+  private static final List<NGram> WORDS =
+      List.of(NGram.from("route"), NGram.from("rebus"), NGram.from("redux"), NGram.from("hello"));
+
+  @Test
+  void testSelectiveConjunctMovesFirst() {
+    Predicate<NGram> neverRejects = ngram -> ngram.toString().chars().sum() > 0;
+    Predicate<NGram> startsWithR = ngram -> ngram.get(0) == 'r';
+    AdaptiveConjunction conjunction = new AdaptiveConjunction(List.of(neverRejects, startsWithR));
+
+    assertArrayEquals(new int[] {0, 1}, conjunction.order());
+    IntStream.range(0, 200_000).forEach(i -> conjunction.test(WORDS.get(i % WORDS.size())));
+    assertArrayEquals(new int[] {1, 0}, conjunction.order());
+  }
+
+  @Test
+  void testReorderingKeepsResults() {
+    Predicate<NGram> containsE = ngram -> ngram.contains('e');
+    Predicate<NGram> startsWithR = ngram -> ngram.get(0) == 'r';
+    Predicate<NGram> notRebus = ngram -> !ngram.toString().equals("rebus");
+    AdaptiveConjunction conjunction =
+        new AdaptiveConjunction(List.of(containsE, startsWithR, notRebus));
+
+    IntStream.range(0, 100_000)
+        .parallel()
+        .forEach(
+            i -> {
+              NGram ngram = WORDS.get(i % WORDS.size());
+              boolean expected = containsE.and(startsWithR).and(notRebus).test(ngram);
+              assertEquals(expected, conjunction.test(ngram));
+            });
+  }
+
+  @Test
+  void testFilterAndFlattensConjuncts() {
+    Filter a = Filter.from(ngram -> ngram.contains('e'));
+    Filter b = Filter.from(ngram -> ngram.get(0) == 'r');
+    Filter c = Filter.from(ngram -> ngram.contains('x'));
+
+    Filter combined = a.and(Optional.of(b)).and(Optional.of(c));
+
+    assertEquals(List.of(a, b, c), combined.conjuncts());
+    assertTrue(combined.test(NGram.from("redux")));
+    assertFalse(combined.test(NGram.from("rebus")));
+  }
+
+  @Test
+  void testManyConjunctsReorderUnderContention() {
+    List<Predicate<NGram>> conjuncts =
+        IntStream.range(0, 40)
+            .mapToObj(i -> (Predicate<NGram>) ngram -> (ngram.hashCode() + i) % 7 != 0)
+            .collect(Collectors.toList());
+    AdaptiveConjunction conjunction = new AdaptiveConjunction(conjuncts);
+    Predicate<NGram> expected = conjuncts.stream().reduce(n -> true, Predicate::and);
+
+    IntStream.range(0, 400_000)
+        .parallel()
+        .forEach(
+            i -> {
+              NGram ngram = WORDS.get(i % WORDS.size());
+              assertEquals(expected.test(ngram), conjunction.test(ngram));
+            });
+  }
+
+  @Test
+  void testNestedConjunctionIsInlinedWithItsStatistics() {
+    Predicate<NGram> neverRejects = ngram -> ngram.toString().chars().sum() > 0;
+    Predicate<NGram> startsWithR = ngram -> ngram.get(0) == 'r';
+    AdaptiveConjunction trained = new AdaptiveConjunction(List.of(neverRejects, startsWithR));
+    IntStream.range(0, 200_000).forEach(i -> trained.test(WORDS.get(i % WORDS.size())));
+
+    Predicate<NGram> containsE = ngram -> ngram.contains('e');
+    AdaptiveConjunction combined = new AdaptiveConjunction(List.of(containsE, trained));
+
+    assertEquals(2, combined.order()[0], "the trained selective conjunct should start first");
+    assertEquals(3, combined.order().length);
+  }
+
+  @Test
+  void testCombinedFilterInheritsTrainedConjunction() {
+    Filter a = Filter.from(ngram -> ngram.toString().chars().sum() > 0);
+    Filter b = Filter.from(ngram -> ngram.get(0) == 'r');
+    Filter trained = a.and(Optional.of(b));
+    IntStream.range(0, 200_000).forEach(i -> trained.test(WORDS.get(i % WORDS.size())));
+
+    Filter c = Filter.from(ngram -> ngram.contains('x'));
+    Filter combined =
+        IntStream.range(0, 50).mapToObj(i -> c).reduce(trained, (x, y) -> x.and(Optional.of(y)));
+
+    assertEquals(52, combined.conjuncts().size());
+    assertTrue(combined.test(NGram.from("redux")));
+    assertFalse(combined.test(NGram.from("route")));
+  }
+}
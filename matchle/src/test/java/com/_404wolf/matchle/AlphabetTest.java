@@ -0,0 +1,69 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class AlphabetTest {
+
+  private static List<NGram> words(String... words) {
+    return List.of(words).stream().map(NGram::from).collect(Collectors.toList());
+  }
+
+  @Test
+  void testLatin() {
+    assertSame(Alphabet.LATIN, Alphabet.of(words("route", "rebus")));
+    assertEquals(26, Alphabet.LATIN.size());
+    assertEquals(5, Alphabet.LATIN.bits());
+    assertEquals(12, Alphabet.LATIN.maxPackedSize());
+    assertEquals(1, Alphabet.LATIN.code('a'));
+    assertEquals(26, Alphabet.LATIN.code('z'));
+    assertEquals(0, Alphabet.LATIN.code('é'));
+  }
+
+  @Test
+  void testDenseCodesForOtherScripts() {
+    Alphabet alphabet = Alphabet.of(words("мышка", "кошка"));
+
+    assertEquals(List.of('а', 'к', 'м', 'о', 'ш', 'ы'), alphabet.letters());
+    assertEquals(3, alphabet.bits());
+    assertEquals(21, alphabet.maxPackedSize());
+    assertEquals(0, alphabet.code('z'));
+    assertSame(alphabet, Alphabet.of(words("кошка", "мышка", "мышка")));
+  }
+
+  @Test
+  void testPacking() {
+    Alphabet alphabet = Alphabet.of(words("мышка", "кошка"));
+    NGram ngram = NGram.from("кошка");
+
+    long packed = alphabet.pack(ngram);
+    for (int i = 0; i < ngram.size(); i++) {
+      assertEquals(alphabet.code(ngram.get(i)), (packed >>> (i * 3)) & 7);
+    }
+    assertEquals(packed, ngram.packed(alphabet));
+    assertEquals(alphabet.mask(Set.of('к', 'о', 'ш', 'а')), ngram.letters(alphabet));
+    assertFalse(NGram.from("кошки").isPacked(alphabet));
+    assertFalse(ngram.isPacked(Alphabet.LATIN));
+    assertTrue(ngram.isPacked(alphabet));
+  }
+
+  @Test
+  void testMostFrequentCharactersAreKept() {
+    List<NGram> ngrams =
+        IntStream.range(0, 100)
+            .mapToObj(i -> NGram.from(String.valueOf((char) ('Ā' + i)) + "ab"))
+            .collect(Collectors.toList());
+    Alphabet alphabet = Alphabet.of(ngrams);
+
+    assertEquals(Alphabet.MAX_LETTERS, alphabet.size());
+    assertTrue(alphabet.code('a') > 0 && alphabet.code('b') > 0);
+    assertEquals(6, alphabet.bits());
+    assertEquals(
+        Alphabet.MAX_LETTERS - 2, ngrams.stream().filter(n -> n.isPacked(alphabet)).count());
+  }
+}
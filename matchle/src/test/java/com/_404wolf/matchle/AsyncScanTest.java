@@ -0,0 +1,214 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class AsyncScanTest {
+
+  private static Corpus randomCorpus(int size) {
+    Random random = new Random(34);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, size)
+        .mapToObj(
+            i ->
+                random
+                    .ints(5, 'a', 'z' + 1)
+                    .mapToObj(c -> String.valueOf((char) c))
+                    .collect(Collectors.joining()))
+        .map(NGram::from)
+        .forEach(builder::add);
+    return builder.build();
+  }
+
+  /** Records what a publisher sends, requesting the given amount on subscription. */
+  private static final class Recorder implements Flow.Subscriber<NGram> {
+    private final long initial;
+    private final List<NGram> received = new CopyOnWriteArrayList<>();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final CountDownLatch arrived;
+    private volatile Flow.Subscription subscription;
+    private volatile Throwable error;
+    private volatile boolean completed;
+
+    private Recorder(long initial) {
+      this.initial = initial;
+      this.arrived = new CountDownLatch((int) Math.min(initial, Integer.MAX_VALUE));
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(initial);
+    }
+
+    @Override
+    public void onNext(NGram item) {
+      received.add(item);
+      arrived.countDown();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      terminated.countDown();
+    }
+  }
+
+  @Test
+  void testSizeAsync() throws Exception {
+    Corpus corpus = randomCorpus(20_000);
+    Filter filter = NGramMatcher.of(NGram.from("arise"), NGram.from("stare")).match();
+
+    assertEquals(corpus.size(filter), corpus.sizeAsync(filter).get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testSizeAsyncCancelled() {
+    CompletableFuture<Long> count = randomCorpus(20_000).sizeAsync(Filter.from(n -> true));
+    count.cancel(true);
+
+    assertTrue(count.isCancelled());
+  }
+
+  @Test
+  void testIndexIsBuiltOffTheCallersThread() throws Exception {
+    Corpus corpus = randomCorpus(20_000);
+    Filter filter = Filter.from(n -> n.contains('e'));
+
+    Flow.Publisher<NGram> matches = corpus.matches(filter);
+    assertEquals(0, corpus.footprint().index());
+
+    long count = corpus.sizeAsync(filter).get(10, TimeUnit.SECONDS);
+    assertTrue(corpus.footprint().index() > 0);
+    Recorder recorder = new Recorder(Long.MAX_VALUE);
+    matches.subscribe(recorder);
+    assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+    assertEquals(count, recorder.received.size());
+  }
+
+  @Test
+  void testMatchesPreparesOnTheExecutor() throws Exception {
+    Corpus corpus = randomCorpus(2_000);
+    Thread caller = Thread.currentThread();
+    List<Thread> preparers = new CopyOnWriteArrayList<>();
+    Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+    AsyncScan.matches(
+            () -> {
+              preparers.add(Thread.currentThread());
+              return corpus.index();
+            },
+            () -> Filter.from(n -> n.contains('e')),
+            ForkJoinPool.commonPool())
+        .subscribe(recorder);
+
+    assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+    assertTrue(recorder.completed);
+    assertEquals(corpus.size(Filter.from(n -> n.contains('e'))), recorder.received.size());
+    assertEquals(1, preparers.size());
+    assertNotSame(caller, preparers.get(0));
+  }
+
+  @Test
+  void testFailedPreparationSignalsError() throws Exception {
+    Recorder recorder = new Recorder(1);
+    AsyncScan.matches(
+            () -> {
+              throw new IllegalStateException("no index");
+            },
+            () -> Filter.FALSE,
+            ForkJoinPool.commonPool())
+        .subscribe(recorder);
+
+    assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+    assertNotNull(recorder.subscription);
+    assertInstanceOf(IllegalStateException.class, recorder.error);
+  }
+
+  @Test
+  void testMatchesPublishesEveryMatch() throws Exception {
+    Corpus corpus = randomCorpus(20_000);
+    Filter filter = Filter.from(n -> n.contains('e'));
+    Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+    corpus.matches(filter).subscribe(recorder);
+
+    assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+    assertTrue(recorder.completed);
+    assertEquals(corpus.size(filter), recorder.received.size());
+    assertEquals(
+        corpus.getCorpus().stream().filter(filter::test).collect(Collectors.toSet()),
+        Set.copyOf(recorder.received));
+  }
+
+  @Test
+  void testMatchesRespectsDemand() throws Exception {
+    Corpus corpus = randomCorpus(20_000);
+    Recorder recorder = new Recorder(10);
+
+    corpus.matches(Filter.from(n -> true)).subscribe(recorder);
+
+    assertTrue(recorder.arrived.await(10, TimeUnit.SECONDS));
+    Thread.sleep(100);
+    assertEquals(10, recorder.received.size());
+    assertFalse(recorder.completed);
+
+    recorder.subscription.request(5);
+    Thread.sleep(100);
+    assertEquals(15, recorder.received.size());
+  }
+
+  @Test
+  void testMatchesStopsWhenCancelled() throws Exception {
+    Corpus corpus = randomCorpus(20_000);
+    Recorder recorder = new Recorder(10);
+
+    corpus.matches(Filter.from(n -> true)).subscribe(recorder);
+    assertTrue(recorder.arrived.await(10, TimeUnit.SECONDS));
+    recorder.subscription.cancel();
+    recorder.subscription.request(100);
+    Thread.sleep(100);
+
+    assertEquals(10, recorder.received.size());
+    assertFalse(recorder.completed);
+  }
+
+  @Test
+  void testMatchesOfEmptyResult() throws Exception {
+    Recorder recorder = new Recorder(1);
+
+    randomCorpus(100).matches(Filter.FALSE).subscribe(recorder);
+
+    assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+    assertTrue(recorder.completed);
+    assertTrue(recorder.received.isEmpty());
+  }
+
+  @Test
+  void testMatchesRejectsNonPositiveRequest() throws Exception {
+    Recorder recorder = new Recorder(0);
+
+    randomCorpus(100).matches(Filter.from(n -> true)).subscribe(recorder);
+
+    assertTrue(recorder.terminated.await(10, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalArgumentException.class, recorder.error);
+  }
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.*;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import org.junit.jupiter.api.Test;
 
@@ -120,4 +121,75 @@ class CorpusTest {
     Filter containsE = Filter.from(ngram -> ngram.toString().contains("e"));
     assertEquals(4, corpus.size(containsE));
   }
+
+  @Test
+  void testWithAndWithout() {
+    Corpus original =
+        Corpus.Builder.EMPTY().add(NGram.from("word")).add(NGram.from("test")).build();
+
+    Corpus added = original.with(NGram.from("tile"));
+    Corpus removed = added.without(NGram.from("word"));
+
+    assertEquals(2, original.corpus().size());
+    assertEquals(3, added.corpus().size());
+    assertEquals(Set.of(NGram.from("test"), NGram.from("tile")), removed.corpus());
+    assertSame(original, original.with(NGram.from("word")));
+    assertSame(original, original.without(NGram.from("gone")));
+    assertThrows(IllegalArgumentException.class, () -> original.with(NGram.from("words")));
+  }
+
+  @Test
+  void testWordIdsFollowTextOrder() {
+    Corpus corpus =
+        Corpus.Builder.EMPTY()
+            .add(NGram.from("zeta"))
+            .add(NGram.from("Zeta"))
+            .add(NGram.from("beta"))
+            .add(NGram.from("bets"))
+            .add(NGram.from("écru"))
+            .build();
+
+    String[] expected = {"Zeta", "beta", "bets", "zeta", "écru"};
+    for (int id = 0; id < expected.length; id++) {
+      assertEquals(expected[id], corpus.word(id).toString());
+    }
+  }
+
+  @Test
+  void testVersionsCarryDerivedStateForward() {
+    Corpus corpus =
+        Corpus.Builder.EMPTY()
+            .add(NGram.from("beta"))
+            .add(NGram.from("zeta"))
+            .add(NGram.from("bets"))
+            .build();
+    corpus.index();
+    String hash = corpus.contentHash();
+    Alphabet alphabet = corpus.alphabet();
+
+    Corpus edited =
+        corpus.with(NGram.from("aloe")).with(NGram.from("cede")).without(NGram.from("beta"));
+    Corpus rebuilt =
+        Corpus.Builder.EMPTY()
+            .add(NGram.from("zeta"))
+            .add(NGram.from("cede"))
+            .add(NGram.from("aloe"))
+            .add(NGram.from("bets"))
+            .build();
+
+    assertEquals(0, edited.footprint().index());
+    assertEquals(rebuilt.contentHash(), edited.contentHash());
+    assertEquals(
+        hash,
+        edited
+            .with(NGram.from("beta"))
+            .without(NGram.from("aloe"))
+            .without(NGram.from("cede"))
+            .contentHash());
+    assertSame(alphabet, corpus.without(NGram.from("zeta")).with(NGram.from("beet")).alphabet());
+    assertTrue(corpus.with(NGram.from("quiz")).alphabet().code('q') > 0);
+    assertEquals(
+        List.of(NGram.from("bets"), NGram.from("cede"), NGram.from("zeta")),
+        edited.find(Query.parse("??[dt]?")));
+  }
 }
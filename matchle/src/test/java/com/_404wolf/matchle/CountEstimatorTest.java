@@ -0,0 +1,93 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class CountEstimatorTest {
+
+  private static Corpus randomCorpus(int size, long seed) {
+    Random random = new Random(seed);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, size)
+        .mapToObj(i -> random.ints(5, 'a', 'k').mapToObj(c -> String.valueOf((char) c)))
+        .map(chars -> NGram.from(chars.collect(Collectors.joining())))
+        .forEach(builder::add);
+    return builder.build();
+  }
+
+  @Test
+  void testEstimateWithinInterval() {
+    Corpus corpus = randomCorpus(50_000, 293);
+    Filter containsA = Filter.from(ngram -> ngram.contains('a'));
+
+    Estimate estimate = corpus.estimateSize(containsA, 0.05, new SplittableRandom(1));
+    long exact = corpus.size(containsA);
+
+    assertFalse(estimate.exact());
+    assertTrue(estimate.relativeError() <= 0.05);
+    // The seed is fixed, so this 95% interval either always holds or never does
+    assertTrue(estimate.lower() <= exact && exact <= estimate.upper(), estimate + " vs " + exact);
+  }
+
+  @Test
+  void testEstimateDoesNotBuildTheIndex() {
+    Corpus corpus = randomCorpus(50_000, 293);
+    Filter containsA = Filter.from(ngram -> ngram.contains('a'));
+
+    Estimate uniform = corpus.estimateSize(containsA, 0.05, new SplittableRandom(1));
+    assertEquals(0, corpus.footprint().index());
+
+    corpus.index().positional();
+    Estimate stratified = corpus.estimateSize(containsA, 0.05, new SplittableRandom(1));
+    long exact = corpus.size(containsA);
+    for (Estimate estimate : List.of(uniform, stratified)) {
+      assertFalse(estimate.exact());
+      assertTrue(estimate.lower() <= exact && exact <= estimate.upper(), estimate + " vs " + exact);
+    }
+  }
+
+  @Test
+  void testSmallResultCountedExactly() {
+    Corpus corpus = randomCorpus(50_000, 293);
+    Filter filter = NGramMatcher.of(NGram.from("abcde"), NGram.from("abcde")).match();
+
+    Estimate estimate = corpus.estimateSize(filter, 0.01, new SplittableRandom(1));
+
+    assertTrue(estimate.exact());
+    assertEquals(corpus.size(filter), (long) estimate.value());
+  }
+
+  @Test
+  void testSmallCorpusCountedExactly() {
+    Corpus corpus = randomCorpus(100, 293);
+    Filter containsA = Filter.from(ngram -> ngram.contains('a'));
+
+    Estimate estimate = corpus.estimateSize(containsA, 0.5);
+
+    assertTrue(estimate.exact());
+    assertEquals(corpus.size(containsA), (long) estimate.value());
+    assertEquals(0, estimate.relativeError());
+  }
+
+  @Test
+  void testExactUsesFixedPostings() {
+    Corpus corpus = randomCorpus(5_000, 7);
+    Filter filter = NGramMatcher.of(NGram.from("bacad"), NGram.from("badge")).match();
+
+    corpus.index().positional();
+    assertEquals(corpus.size(filter), CountEstimator.exact(corpus.index(), filter));
+  }
+
+  @Test
+  void testInvalidTargetError() {
+    Corpus corpus = randomCorpus(10, 1);
+    assertThrows(
+        IllegalArgumentException.class, () -> corpus.estimateSize(Filter.from(n -> true), 0));
+  }
+}
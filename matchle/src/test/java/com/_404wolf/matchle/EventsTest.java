@@ -0,0 +1,90 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EventsTest {
+  private static final List<String> NAMES =
+      List.of(
+          "com._404wolf.matchle.Match",
+          "com._404wolf.matchle.Size",
+          "com._404wolf.matchle.Filter",
+          "com._404wolf.matchle.Build");
+
+  @TempDir Path directory;
+
+  private static Corpus corpus() {
+    return Corpus.Builder.EMPTY()
+        .addAll(
+            List.of(
+                NGram.from("route"), NGram.from("rebus"), NGram.from("redux"), NGram.from("hello")))
+        .build();
+  }
+
+  @Test
+  void testEventsAreDisabledByDefault() {
+    corpus();
+    FlightRecorder.register(Events.MatchEvent.class);
+    FlightRecorder.register(Events.SizeEvent.class);
+    FlightRecorder.register(Events.FilterEvent.class);
+    FlightRecorder.register(Events.BuildEvent.class);
+
+    Map<String, Boolean> enabled =
+        FlightRecorder.getFlightRecorder().getEventTypes().stream()
+            .filter(type -> NAMES.contains(type.getName()))
+            .collect(Collectors.toMap(EventType::getName, EventType::isEnabled));
+
+    assertEquals(
+        Map.of(NAMES.get(0), false, NAMES.get(1), false, NAMES.get(2), false, NAMES.get(3), false),
+        enabled);
+  }
+
+  @Test
+  void testEventsAreRecorded() throws Exception {
+    Path file = directory.resolve("matchle.jfr");
+    try (Recording recording = new Recording()) {
+      NAMES.forEach(name -> recording.enable(name).withoutThreshold());
+      recording.start();
+
+      Corpus corpus = corpus();
+      Filter hint = NGramMatcher.of(NGram.from("rebus"), NGram.from("route")).match();
+      corpus.size(hint);
+      Corpus.Builder.of(corpus).filter(hint);
+
+      recording.stop();
+      recording.dump(file);
+    }
+
+    Map<String, List<RecordedEvent>> events =
+        RecordingFile.readAllEvents(file).stream()
+            .collect(Collectors.groupingBy(event -> event.getEventType().getName()));
+
+    RecordedEvent size = events.get("com._404wolf.matchle.Size").get(0);
+    assertEquals(4, size.getLong("corpusSize"));
+    assertEquals(2, size.getLong("resultSize"));
+    assertEquals(5, size.getInt("conjuncts"));
+
+    RecordedEvent filter = events.get("com._404wolf.matchle.Filter").get(0);
+    assertEquals(4, filter.getLong("corpusSize"));
+    assertEquals(2, filter.getLong("resultSize"));
+
+    RecordedEvent match = events.get("com._404wolf.matchle.Match").get(0);
+    assertEquals(5, match.getInt("wordSize"));
+    assertEquals(5, match.getInt("conjuncts"));
+
+    assertTrue(
+        events.get("com._404wolf.matchle.Build").stream()
+            .anyMatch(build -> build.getLong("corpusSize") == 4 && build.getBoolean("consistent")));
+  }
+}
@@ -0,0 +1,115 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FeedbackCacheTest {
+
+  private static final List<NGram> WORDS =
+      List.of("eerie", "geese", "speed", "abbey", "lever", "route", "rebus", "redux", "hello")
+          .stream()
+          .map(NGram::from)
+          .collect(Collectors.toList());
+
+  private static List<NGram> randomWords(int n, long seed) {
+    Random random = new Random(seed);
+    return IntStream.range(0, n)
+        .mapToObj(i -> random.ints(5, 'a', 'h').mapToObj(c -> String.valueOf((char) c)))
+        .map(chars -> NGram.from(chars.collect(Collectors.joining())))
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void testCachedPatternsMatchComputed() {
+    FeedbackCache cache = FeedbackCache.of(Alphabet.LATIN, 1 << 16);
+    for (int round = 0; round < 2; round++) {
+      for (NGram key : WORDS) {
+        for (NGram guess : WORDS) {
+          assertEquals(
+              NGramMatcher.computePattern(key, guess),
+              cache.pattern(key, guess),
+              key + " " + guess);
+        }
+      }
+    }
+    assertEquals(WORDS.size() * WORDS.size(), cache.misses());
+    assertEquals(WORDS.size() * WORDS.size(), cache.hits());
+  }
+
+  @Test
+  void testEvictionKeepsCacheBounded() {
+    FeedbackCache cache = FeedbackCache.of(Alphabet.LATIN, 1);
+    assertEquals(FeedbackCache.STRIPES * FeedbackCache.WAYS, cache.capacity());
+    assertEquals(1 << 10, FeedbackCache.of(Alphabet.LATIN, 1000).capacity());
+
+    List<NGram> words = randomWords(200, 42);
+    NGram guess = NGram.from("faced");
+    words.forEach(
+        key -> assertEquals(NGramMatcher.computePattern(key, guess), cache.pattern(key, guess)));
+    words.forEach(
+        key -> assertEquals(NGramMatcher.computePattern(key, guess), cache.pattern(key, guess)));
+    assertTrue(cache.misses() > words.stream().distinct().count());
+  }
+
+  @Test
+  void testReferencedEntriesSurviveEviction() {
+    FeedbackCache cache = FeedbackCache.of(Alphabet.LATIN, 1);
+    NGram hot = NGram.from("hello");
+    NGram guess = NGram.from("lever");
+    cache.pattern(hot, guess);
+    cache.pattern(hot, guess);
+
+    List<NGram> others = randomWords(3 * cache.capacity(), 7);
+    for (NGram key : others) {
+      cache.pattern(key, guess);
+      long hits = cache.hits();
+      cache.pattern(hot, guess);
+      assertEquals(hits + 1, cache.hits(), "hot pair evicted after " + key);
+    }
+  }
+
+  @Test
+  void testConcurrentLookups() {
+    FeedbackCache cache = FeedbackCache.of(Alphabet.LATIN, 1 << 8);
+    List<NGram> words = randomWords(300, 11);
+
+    IntStream.range(0, 20_000)
+        .parallel()
+        .forEach(
+            i -> {
+              NGram key = words.get(i % words.size());
+              NGram guess = words.get((i * 31) % words.size());
+              assertEquals(NGramMatcher.computePattern(key, guess), cache.pattern(key, guess));
+            });
+    assertEquals(20_000, cache.hits() + cache.misses());
+  }
+
+  @Test
+  void testUnpackedPairsAreNotCached() {
+    FeedbackCache cache = FeedbackCache.of(Alphabet.LATIN, 1 << 6);
+    NGram accented = NGram.from("rébus");
+    NGram guess = NGram.from("rebus");
+
+    assertEquals(NGramMatcher.computePattern(accented, guess), cache.pattern(accented, guess));
+    assertEquals(0, cache.hits() + cache.misses());
+    assertThrows(IllegalArgumentException.class, () -> cache.pattern(guess, NGram.from("rebuses")));
+  }
+
+  @Test
+  void testMatcherUsesSharedCache() {
+    FeedbackCache shared = FeedbackCache.shared(Alphabet.LATIN);
+    assertSame(shared, FeedbackCache.shared(Alphabet.LATIN));
+
+    NGram key = NGram.from("pearl");
+    NGram guess = NGram.from("plate");
+    long hits = shared.hits();
+    NGramMatcher.pattern(key, guess);
+    NGramMatcher.pattern(key, guess);
+    assertTrue(shared.hits() > hits);
+  }
+}
@@ -0,0 +1,209 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FilterCompilerTest {
+
+  private static final List<NGram> WORDS =
+      List.of("eerie", "geese", "speed", "abbey", "lever", "route", "rebus", "redux", "hello")
+          .stream()
+          .map(NGram::from)
+          .collect(Collectors.toList());
+
+  @Test
+  void testCompiledMatchesInterpreted() {
+    for (NGram key : WORDS) {
+      for (NGram guess : WORDS) {
+        Filter filter = NGramMatcher.of(key, guess).match();
+        Filter compiled = FilterCompiler.compile(filter, Alphabet.LATIN, 5);
+
+        assertNotSame(filter, compiled);
+        WORDS.forEach(
+            word -> assertEquals(filter.test(word), compiled.test(word), key + " " + guess));
+      }
+    }
+  }
+
+  @Test
+  void testCompiledFiltersAreCachedByShape() {
+    Constraint constraint =
+        Constraint.fixed(new IndexedCharacter(0, 'r'))
+            .and(Constraint.elsewhere(new IndexedCharacter(4, 'e')))
+            .and(Constraint.absent('o'));
+    Constraint sameShape =
+        Constraint.fixed(new IndexedCharacter(2, 'b'))
+            .and(Constraint.elsewhere(new IndexedCharacter(1, 'u')))
+            .and(Constraint.absent('x'))
+            .and(Constraint.absent('t'));
+    Constraint otherShape = constraint.and(Constraint.elsewhere(new IndexedCharacter(1, 'd')));
+
+    PackedPredicate predicate = FilterCompiler.predicate(constraint, Alphabet.LATIN, 5);
+    assertSame(
+        predicate.getClass(), FilterCompiler.predicate(sameShape, Alphabet.LATIN, 5).getClass());
+    assertSame(
+        predicate.getClass(), FilterCompiler.predicate(constraint, Alphabet.LATIN, 6).getClass());
+    assertNotSame(
+        predicate.getClass(), FilterCompiler.predicate(otherShape, Alphabet.LATIN, 5).getClass());
+
+    for (NGram word : WORDS) {
+      for (Constraint c : List.of(constraint, sameShape, otherShape)) {
+        Filter compiled = FilterCompiler.compile(Filter.of(c), Alphabet.LATIN, 5);
+        assertEquals(c.test(word), compiled.test(word), c + " " + word);
+      }
+    }
+  }
+
+  @Test
+  void testNegativeIndicesAreNotCompiled() {
+    assertFalse(
+        FilterCompiler.isCompilable(
+            Constraint.fixed(new IndexedCharacter(-1, 'a')), Alphabet.LATIN, 5));
+    assertFalse(
+        FilterCompiler.isCompilable(
+            Constraint.elsewhere(new IndexedCharacter(-1, 'a')), Alphabet.LATIN, 5));
+  }
+
+  @Test
+  void testFallbackForUnpackedWords() {
+    Filter filter = NGramMatcher.of(NGram.from("rebus"), NGram.from("route")).match();
+    Filter compiled = FilterCompiler.compile(filter, Alphabet.LATIN, 5);
+
+    NGram accented = NGram.from("rébus");
+    NGram longer = NGram.from("rebuse");
+    assertFalse(accented.isPacked(Alphabet.LATIN));
+    assertEquals(filter.test(accented), compiled.test(accented));
+    assertEquals(filter.test(longer), compiled.test(longer));
+  }
+
+  @Test
+  void testAbsentCharactersOutsideAlphabetAreDropped() {
+    Constraint constraint = Constraint.absent('é').and(Constraint.absent('r'));
+    Filter filter = Filter.of(constraint);
+    Filter compiled = FilterCompiler.compile(filter, Alphabet.LATIN, 5);
+
+    assertTrue(FilterCompiler.isCompilable(constraint, Alphabet.LATIN, 5));
+    assertNotSame(filter, compiled);
+    WORDS.forEach(word -> assertEquals(filter.test(word), compiled.test(word), word.toString()));
+    NGram accented = NGram.from("hélas");
+    assertEquals(filter.test(accented), compiled.test(accented));
+  }
+
+  @Test
+  void testUnstructuredFilterIsNotCompiled() {
+    Filter filter = Filter.from(ngram -> true);
+    assertSame(filter, FilterCompiler.compile(filter, Alphabet.LATIN, 5));
+    assertFalse(
+        FilterCompiler.isCompilable(
+            Constraint.fixed(new IndexedCharacter(0, 'é')), Alphabet.LATIN, 5));
+    assertFalse(
+        FilterCompiler.isCompilable(
+            Constraint.NONE, Alphabet.LATIN, Alphabet.LATIN.maxPackedSize() + 1));
+  }
+
+  @Test
+  void testLargeCorpusSizeUsesCompiledFilter() {
+    Random random = new Random(293);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, 2 * Corpus.COMPILE_THRESHOLD)
+        .mapToObj(i -> random.ints(5, 'a', 'g').mapToObj(c -> String.valueOf((char) c)))
+        .map(chars -> NGram.from(chars.collect(Collectors.joining())))
+        .forEach(builder::add);
+    Corpus corpus = builder.build();
+
+    Filter filter = NGramMatcher.of(NGram.from("faced"), NGram.from("decaf")).match();
+    Filter interpreted = Filter.from(filter::test);
+    assertEquals(corpus.size(interpreted), corpus.size(filter));
+  }
+
+  @Test
+  void testBuilderFilterSeesWordsAddedAfterCompiling() {
+    Random random = new Random(38);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, 2 * Corpus.COMPILE_THRESHOLD)
+        .mapToObj(i -> random.ints(5, 'a', 'g').mapToObj(c -> String.valueOf((char) c)))
+        .map(chars -> NGram.from(chars.collect(Collectors.joining())))
+        .forEach(builder::add);
+    Filter noZ = Filter.of(Constraint.absent('z'));
+    Filter startsWithZ = Filter.of(Constraint.fixed(new IndexedCharacter(0, 'z')));
+    int size = builder.build().getCorpus().size();
+
+    assertEquals(size, builder.filter(noZ).build().getCorpus().size());
+    assertTrue(builder.filter(startsWithZ).build().getCorpus().isEmpty());
+
+    builder.add(NGram.from("zebra"));
+    assertEquals(size, builder.filter(noZ).build().getCorpus().size());
+    assertEquals(Set.of(NGram.from("zebra")), builder.filter(startsWithZ).build().getCorpus());
+  }
+
+  @Test
+  void testFilteredBuilderInheritsAlphabet() {
+    Random random = new Random(39);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, 2 * Corpus.COMPILE_THRESHOLD)
+        .mapToObj(i -> random.ints(5, 'a', 'g').mapToObj(c -> String.valueOf((char) c)))
+        .map(chars -> NGram.from(chars.collect(Collectors.joining())))
+        .forEach(builder::add);
+    builder.add(NGram.from("zebra"));
+
+    Corpus.Builder filtered = builder.filter(Filter.of(Constraint.absent('z')));
+    Corpus.Builder twice = filtered.filter(Filter.of(Constraint.absent('a')));
+
+    assertTrue(builder.alphabet().code('z') > 0);
+    assertSame(builder.alphabet(), filtered.alphabet());
+    assertSame(builder.alphabet(), twice.alphabet());
+    assertEquals(
+        builder.build().getCorpus().stream()
+            .filter(n -> !n.contains('z') && !n.contains('a'))
+            .count(),
+        twice.build().getCorpus().size());
+  }
+
+  @Test
+  void testCompiledAllowedAndRequiredCharacters() {
+    List<Constraint> constraints =
+        List.of(
+            Constraint.allowed(2, Set.of('e', 'b', 'd')),
+            Constraint.allowed(0, Set.of()),
+            Constraint.required('e').and(Constraint.required('r')),
+            Constraint.allowed(4, Set.of('e', 'o', 'x'))
+                .and(Constraint.required('u'))
+                .and(Constraint.absent('t')));
+
+    for (Constraint constraint : constraints) {
+      Filter filter = Filter.of(constraint);
+      Filter compiled = FilterCompiler.compile(filter, Alphabet.LATIN, 5);
+
+      assertNotSame(filter, compiled);
+      WORDS.forEach(
+          word -> assertEquals(filter.test(word), compiled.test(word), constraint + " " + word));
+    }
+    assertFalse(FilterCompiler.isCompilable(Constraint.allowed(5, Set.of('a')), Alphabet.LATIN, 5));
+  }
+
+  @Test
+  void testCompiledMatchesInterpretedForOtherScripts() {
+    List<NGram> words =
+        List.of("мышка", "мышца", "кошка", "крыша", "шишка", "éclat", "élevé", "cèpes").stream()
+            .map(NGram::from)
+            .collect(Collectors.toList());
+    Alphabet alphabet = Alphabet.of(words);
+
+    for (NGram key : words) {
+      for (NGram guess : words) {
+        Filter filter = NGramMatcher.of(key, guess).match();
+        Filter compiled = FilterCompiler.compile(filter, alphabet, 5);
+
+        assertNotSame(filter, compiled);
+        words.forEach(
+            word -> assertEquals(filter.test(word), compiled.test(word), key + " " + guess));
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FootprintTest {
+
+  private static Corpus randomCorpus(int size, int wordSize) {
+    Random random = new Random(37);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, size)
+        .mapToObj(
+            i ->
+                random
+                    .ints(wordSize, 'a', 'z' + 1)
+                    .mapToObj(c -> String.valueOf((char) c))
+                    .collect(Collectors.joining()))
+        .map(NGram::from)
+        .forEach(builder::add);
+    return builder.build();
+  }
+
+  @Test
+  void testLayout() {
+    assertEquals(16, Footprint.object(0, 1));
+    assertEquals(24, Footprint.object(1, 8));
+    assertEquals(16, Footprint.array(0, Footprint.REFERENCE));
+    assertEquals(40, Footprint.array(5, Footprint.REFERENCE));
+    assertEquals(0, Footprint.boxed('a'));
+    assertEquals(16, Footprint.boxed('é'));
+  }
+
+  @Test
+  void testDerivedStructuresCountOnceBuilt() {
+    Corpus corpus = randomCorpus(1_000, 5);
+
+    Footprint fresh = corpus.footprint();
+    assertEquals(1_000, fresh.count(), 10);
+    assertEquals(0, fresh.index());
+    assertEquals(0, fresh.cache());
+    assertTrue(fresh.ngrams() > 0 && fresh.storage() > 0);
+
+    corpus.index().positional();
+    corpus.statistics();
+    Footprint built = corpus.footprint();
+    assertEquals(fresh.ngrams(), built.ngrams());
+    assertTrue(built.index() > 0 && built.cache() > 0);
+    assertEquals(built.ngrams() + built.storage() + built.index() + built.cache(), built.total());
+    assertEquals((double) built.total() / built.count(), built.perWord());
+  }
+
+  @Test
+  void testEstimateMatchesLoadedCorpus() {
+    for (int size : new int[] {100, 5_000, 40_000}) {
+      Corpus corpus = randomCorpus(size, 5);
+      corpus.index().positional();
+      corpus.statistics();
+      Footprint actual = corpus.footprint();
+      Footprint estimate = Footprint.estimate(corpus.getCorpus().size(), 5);
+
+      assertEquals(actual.storage(), estimate.storage(), actual.storage() * 0.1);
+      assertEquals(actual.index(), estimate.index(), actual.index() * 0.1);
+      assertEquals(actual.total(), estimate.total(), actual.total() * 0.1);
+      assertTrue(estimate.ngrams() >= actual.ngrams());
+    }
+  }
+
+  /** Returns the heap in use after collecting garbage until it stops shrinking. */
+  private static long settledHeap() throws InterruptedException {
+    Runtime runtime = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int round = 0; round < 10; round++) {
+      System.gc();
+      Thread.sleep(20);
+      long now = runtime.totalMemory() - runtime.freeMemory();
+      if (now >= used) {
+        return now;
+      }
+      used = now;
+    }
+    return used;
+  }
+
+  @Test
+  void testEstimateMatchesHeapUse() throws InterruptedException {
+    long before = settledHeap();
+    List<Corpus> corpora = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Corpus corpus = randomCorpus(10_000, 5);
+      corpus.index().positional();
+      corpus.statistics();
+      corpora.add(corpus);
+    }
+    long measured = settledHeap() - before;
+
+    long reported = corpora.stream().mapToLong(corpus -> corpus.footprint().total()).sum();
+    assertEquals(reported, measured, reported * 0.2, "reported footprint against heap delta");
+  }
+
+  @Test
+  void testEmpty() {
+    Footprint footprint = Corpus.Builder.EMPTY().build().footprint();
+
+    assertEquals(0, footprint.count());
+    assertEquals(0, footprint.ngrams());
+    assertEquals(0, footprint.perWord());
+    Footprint estimate = Footprint.estimate(0, 5);
+    assertEquals(0, estimate.total() - estimate.storage());
+    assertEquals(footprint.storage(), estimate.storage(), Footprint.ALIGNMENT);
+    assertThrows(IllegalArgumentException.class, () -> Footprint.estimate(-1, 5));
+  }
+}
@@ -0,0 +1,100 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class GuessSearchTest {
+
+  private static List<NGram> randomWords(int size, long seed, char last) {
+    Random random = new Random(seed);
+    return IntStream.range(0, size)
+        .mapToObj(
+            i ->
+                random
+                    .ints(5, 'a', last + 1)
+                    .mapToObj(c -> String.valueOf((char) c))
+                    .collect(Collectors.joining()))
+        .map(NGram::from)
+        .distinct()
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void testBoundIsNeverBelowScore() {
+    List<NGram> candidates = randomWords(300, 1, 'j');
+    LetterStatistics statistics = LetterStatistics.of(5, candidates);
+
+    for (NGram guess : randomWords(200, 2, 'l')) {
+      int bound = GuessSearch.bound(guess, statistics, candidates.size());
+      int score = GuessSearch.exhaustive(List.of(guess), candidates, 1).get(0).partitions();
+      assertTrue(bound >= score, guess + ": bound " + bound + " below score " + score);
+    }
+  }
+
+  @Test
+  void testTopEqualsExhaustiveRanking() {
+    List<NGram> guesses = randomWords(1_500, 3, 'z');
+    List<NGram> candidates = randomWords(400, 4, 'p');
+    LetterStatistics statistics = LetterStatistics.of(5, candidates);
+
+    for (int k : new int[] {1, 5, 40}) {
+      assertEquals(
+          GuessSearch.exhaustive(guesses, candidates, k),
+          GuessSearch.top(guesses, candidates, statistics, k));
+    }
+  }
+
+  @Test
+  void testSearchSkipsHopelessGuesses() {
+    List<NGram> guesses = randomWords(1_500, 5, 'z');
+    List<NGram> candidates = randomWords(400, 6, 'h');
+    GuessSearch search =
+        GuessSearch.search(guesses, candidates, LetterStatistics.of(5, candidates), 10);
+
+    assertEquals(GuessSearch.exhaustive(guesses, candidates, 10), search.run());
+    assertTrue(search.scored() < guesses.size(), "scored " + search.scored());
+  }
+
+  @Test
+  void testTopOfCorpora() {
+    Corpus guesses =
+        Corpus.Builder.EMPTY()
+            .addAll(List.of(NGram.from("route"), NGram.from("rebus"), NGram.from("hello")))
+            .build();
+    Corpus answers =
+        Corpus.Builder.EMPTY()
+            .addAll(List.of(NGram.from("rebus"), NGram.from("redux"), NGram.from("route")))
+            .build();
+
+    List<RankedGuess> top = GuessSearch.top(guesses, answers, 2);
+
+    assertEquals(GuessSearch.exhaustive(guesses.getCorpus(), answers.getCorpus(), 2), top);
+    assertEquals(3, top.get(0).partitions());
+  }
+
+  @Test
+  void testTiesPreferCandidates() {
+    List<NGram> guesses = List.of(NGram.from("abbey"), NGram.from("zebra"));
+    List<NGram> candidates = List.of(NGram.from("zebra"));
+
+    for (List<RankedGuess> top :
+        List.of(
+            GuessSearch.exhaustive(guesses, candidates, 2),
+            GuessSearch.top(guesses, candidates, LetterStatistics.of(5, candidates), 2))) {
+      assertEquals(NGram.from("zebra"), top.get(0).guess());
+      assertTrue(top.get(0).candidate());
+      assertEquals(top.get(0).partitions(), top.get(1).partitions());
+    }
+  }
+
+  @Test
+  void testInvalidK() {
+    Corpus corpus = Corpus.Builder.EMPTY().add(NGram.from("route")).build();
+    assertThrows(IllegalArgumentException.class, () -> GuessSearch.top(corpus, corpus, 0));
+  }
+}
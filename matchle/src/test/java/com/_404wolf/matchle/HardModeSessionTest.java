@@ -0,0 +1,88 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class HardModeSessionTest {
+
+  private static Corpus corpus(String... words) {
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    for (String word : words) {
+      builder.add(NGram.from(word));
+    }
+    return builder.build();
+  }
+
+  private static HardModeSession session() {
+    Corpus guesses = corpus("route", "rebus", "redux", "hello", "plate", "ready");
+    Corpus answers = corpus("rebus", "redux", "ready", "hello");
+    return HardModeSession.of(guesses, answers);
+  }
+
+  @Test
+  void testInitialPools() {
+    HardModeSession session = session();
+
+    assertEquals(6, session.legalCount());
+    assertEquals(4, session.candidateCount());
+    assertTrue(session.isLegal(NGram.from("plate")));
+    assertFalse(session.isLegal(NGram.from("zzzzz")));
+    assertFalse(session.isLegal(null));
+  }
+
+  @Test
+  void testPlayNarrowsBothPools() {
+    HardModeSession session = session();
+    NGram key = NGram.from("rebus");
+    NGram guess = NGram.from("route");
+
+    session.play(guess, NGramMatcher.of(key, guess).match());
+
+    assertEquals(corpus("rebus", "redux").corpus(), session.candidates().corpus());
+    assertEquals(corpus("rebus", "redux").corpus(), session.legalGuesses().corpus());
+    assertFalse(session.isLegal(NGram.from("ready")));
+    assertTrue(session.isLegal(key));
+  }
+
+  @Test
+  void testPoolMatchesFullFilterChain() {
+    HardModeSession session = session();
+    NGram key = NGram.from("ready");
+    NGram guess = NGram.from("hello");
+    Filter hint = NGramMatcher.of(key, guess).match();
+
+    session.play(guess, hint);
+
+    Corpus expected =
+        Corpus.Builder.of(corpus("route", "rebus", "redux", "hello", "plate", "ready"))
+            .filter(hint)
+            .build();
+    assertEquals(expected.corpus(), session.legalGuesses().corpus());
+  }
+
+  @Test
+  void testIllegalGuessRejected() {
+    HardModeSession session = session();
+    NGram key = NGram.from("rebus");
+    NGram guess = NGram.from("route");
+    session.play(guess, NGramMatcher.of(key, guess).match());
+
+    NGram illegal = NGram.from("hello");
+    assertThrows(
+        IllegalArgumentException.class, () -> session.play(illegal, Filter.from(n -> true)));
+    assertThrows(NullPointerException.class, () -> session.play(key, null));
+  }
+
+  @Test
+  void testBestGuessesRankLegalGuessesOverCandidates() {
+    HardModeSession session = session();
+    NGram key = NGram.from("rebus");
+    NGram guess = NGram.from("route");
+    session.play(guess, NGramMatcher.of(key, guess).match());
+
+    assertEquals(
+        GuessSearch.exhaustive(session.legalGuesses().corpus(), session.candidates().corpus(), 5),
+        session.bestGuesses(5));
+  }
+}
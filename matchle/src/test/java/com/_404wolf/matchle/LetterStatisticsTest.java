@@ -0,0 +1,87 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class LetterStatisticsTest {
+
+  private static final List<NGram> WORDS =
+      List.of("eerie", "geese", "speed", "route", "rebus").stream()
+          .map(NGram::from)
+          .collect(Collectors.toList());
+
+  private static void assertSameStatistics(LetterStatistics expected, LetterStatistics actual) {
+    assertEquals(expected.words(), actual.words());
+    assertEquals(expected.letters(), actual.letters());
+    for (char c = 'a'; c <= 'z'; c++) {
+      assertEquals(expected.frequency(c), actual.frequency(c));
+      assertArrayEquals(expected.histogram(c), actual.histogram(c));
+    }
+    for (int i = 0; i < expected.wordSize(); i++) {
+      assertEquals(expected.frequencies(i), actual.frequencies(i));
+    }
+  }
+
+  @Test
+  void testCounts() {
+    LetterStatistics statistics = LetterStatistics.of(5, WORDS);
+
+    assertEquals(5, statistics.words());
+    assertEquals(2, statistics.frequency(0, 'r'));
+    assertEquals(10, statistics.frequency('e'));
+    assertEquals(5, statistics.wordsContaining('e'));
+    assertEquals(3, statistics.wordsContaining('r'));
+    assertArrayEquals(new int[] {0, 2, 1, 2, 0, 0}, statistics.histogram('e'));
+    assertEquals(Map.of('e', 3, 'o', 1, 'p', 1), statistics.frequencies(1));
+    assertEquals(0, statistics.frequency(0, 'z'));
+    assertArrayEquals(new int[] {5, 0, 0, 0, 0, 0}, statistics.histogram('z'));
+  }
+
+  @Test
+  void testRemoveMatchesRecount() {
+    LetterStatistics statistics = LetterStatistics.of(5, WORDS);
+    statistics.remove(NGram.from("geese")).remove(NGram.from("route"));
+
+    assertSameStatistics(
+        LetterStatistics.of(5, List.of(WORDS.get(0), WORDS.get(2), WORDS.get(4))), statistics);
+    assertFalse(statistics.letters().contains('o'));
+  }
+
+  @Test
+  void testCopyIsIndependent() {
+    LetterStatistics statistics = LetterStatistics.of(5, WORDS);
+    LetterStatistics copy = statistics.copy();
+    copy.remove(NGram.from("eerie"));
+
+    assertEquals(5, statistics.words());
+    assertEquals(4, copy.words());
+    assertThrows(IllegalArgumentException.class, () -> copy.add(NGram.from("longer")));
+  }
+
+  @Test
+  void testCorpusVersionsUpdateIncrementally() {
+    Corpus corpus = Corpus.Builder.EMPTY().addAll(WORDS).build();
+    corpus.statistics();
+
+    Corpus updated = corpus.without(NGram.from("route")).with(NGram.from("redux"));
+
+    assertSameStatistics(LetterStatistics.of(5, updated), updated.statistics());
+    assertSameStatistics(LetterStatistics.of(5, corpus), corpus.statistics());
+  }
+
+  @Test
+  void testHardModeSessionTracksCandidates() {
+    Corpus answers = Corpus.Builder.EMPTY().addAll(WORDS).build();
+    HardModeSession session = HardModeSession.of(answers, answers);
+    NGram key = NGram.from("speed");
+    NGram guess = NGram.from("geese");
+
+    session.play(guess, NGramMatcher.of(key, guess).match());
+
+    assertSameStatistics(LetterStatistics.of(5, session.candidates()), session.statistics());
+  }
+}
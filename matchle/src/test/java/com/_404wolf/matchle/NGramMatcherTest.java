@@ -89,4 +89,42 @@ class NGramMatcherTest {
     // Second match should throw IllegalArgumentException
     assertThrows(IllegalArgumentException.class, () -> matcher.match());
   }
+
+  @Test
+  void testPattern() {
+    // CharMatch, CharElsewhere, CharMatch, CharAbsent, CharElsewhere as base-3 digits 0, 1, 0, 2, 1
+    assertEquals(
+        1 * 3 + 2 * 27 + 1 * 81, NGramMatcher.pattern(NGram.from("pearl"), NGram.from("plate")));
+    assertEquals(0, NGramMatcher.pattern(NGram.from("pearl"), NGram.from("pearl")));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> NGramMatcher.pattern(NGram.from("pearl"), NGram.from("pearls")));
+  }
+
+  @Test
+  void testPatternOfLongestNGrams() {
+    String longest = "abcdefghijklmnopqrs";
+    String reversed = new StringBuilder(longest).reverse().toString();
+    // Every character but the middle one occurs elsewhere, so every digit but digit 9 is 1
+    assertEquals(
+        (1_162_261_467 - 1) / 2 - 19_683,
+        NGramMatcher.pattern(NGram.from(longest), NGram.from(reversed)));
+    assertEquals(
+        1_162_261_467 - 1,
+        NGramMatcher.pattern(NGram.from(longest), NGram.from("tuvwxyztuvwxyztuvwx")));
+
+    NGram tooLong = NGram.from(longest + "t");
+    assertThrows(IllegalArgumentException.class, () -> NGramMatcher.pattern(tooLong, tooLong));
+    assertThrows(
+        IllegalArgumentException.class, () -> NGramMatcher.computePattern(tooLong, tooLong));
+  }
+
+  @Test
+  void testAccentedCharactersMatch() {
+    NGramMatcher matcher = NGramMatcher.of(NGram.from("élevé"), NGram.from("éclat"));
+    matcher.match();
+
+    assertEquals(
+        "CharMatch, CharAbsent, CharElsewhere, CharAbsent, CharAbsent", matcher.toString());
+  }
 }
@@ -0,0 +1,167 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OpeningBookTest {
+
+  @TempDir Path directory;
+
+  private static Corpus randomCorpus(int size, long seed) {
+    Random random = new Random(seed);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, size)
+        .mapToObj(
+            i ->
+                random
+                    .ints(5, 'a', 'm')
+                    .mapToObj(c -> String.valueOf((char) c))
+                    .collect(Collectors.joining()))
+        .map(NGram::from)
+        .forEach(builder::add);
+    return builder.build();
+  }
+
+  @Test
+  void testBookHoldsBestOpeningAndReplies() {
+    Corpus guesses = randomCorpus(300, 1);
+    Corpus answers = randomCorpus(150, 2);
+
+    OpeningBook book = OpeningBook.compute(guesses, answers);
+
+    NGram opening = book.opening().orElseThrow();
+    assertEquals(
+        GuessSearch.exhaustive(guesses.getCorpus(), answers.getCorpus(), 1).get(0).guess(),
+        opening);
+
+    Map<Integer, List<NGram>> partitions =
+        answers.getCorpus().stream()
+            .collect(Collectors.groupingBy(answer -> NGramMatcher.pattern(answer, opening)));
+    partitions.forEach(
+        (pattern, partition) ->
+            assertEquals(
+                GuessSearch.exhaustive(guesses.getCorpus(), partition, 1).get(0).guess(),
+                book.reply(pattern).orElseThrow()));
+    assertTrue(book.reply(-1).isEmpty());
+  }
+
+  @Test
+  void testSingletonReplyIsItsAnswer() {
+    Corpus answers = randomCorpus(150, 2);
+    Corpus guesses =
+        Corpus.Builder.EMPTY()
+            .addAll(randomCorpus(300, 1).getCorpus())
+            .addAll(answers.getCorpus())
+            .build();
+
+    OpeningBook book = OpeningBook.compute(guesses, answers);
+
+    NGram opening = book.opening().orElseThrow();
+    Map<Integer, List<NGram>> singletons =
+        answers.getCorpus().stream()
+            .collect(Collectors.groupingBy(answer -> NGramMatcher.pattern(answer, opening)))
+            .entrySet()
+            .stream()
+            .filter(partition -> partition.getValue().size() == 1)
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    assertFalse(singletons.isEmpty());
+    singletons.forEach(
+        (pattern, partition) -> assertEquals(partition.get(0), book.reply(pattern).orElseThrow()));
+  }
+
+  @Test
+  void testSaveAndLoad() {
+    Corpus guesses = randomCorpus(100, 3);
+    Corpus answers = randomCorpus(60, 4);
+    Path path = directory.resolve("answers.book");
+    OpeningBook book = OpeningBook.compute(guesses, answers);
+
+    book.save(path);
+    OpeningBook loaded = OpeningBook.load(path, guesses, answers).orElseThrow();
+
+    assertEquals(book.opening(), loaded.opening());
+    IntStream.range(0, 243).forEach(p -> assertEquals(book.reply(p), loaded.reply(p)));
+  }
+
+  @Test
+  void testBookIsInvalidatedWhenCorpusChanges() throws Exception {
+    Corpus guesses = randomCorpus(100, 5);
+    Corpus answers = randomCorpus(60, 6);
+    Path path = directory.resolve("answers.book");
+    OpeningBook.of(path, guesses, answers);
+
+    Corpus changed = answers.with(NGram.from("zzzzz"));
+    assertTrue(OpeningBook.load(path, guesses, answers).isPresent());
+    assertTrue(OpeningBook.load(path, guesses, changed).isEmpty());
+
+    OpeningBook recomputed = OpeningBook.of(path, guesses, changed);
+    assertTrue(recomputed.isValidFor(guesses, changed));
+    assertTrue(OpeningBook.load(path, guesses, changed).isPresent());
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(List.of(path), files.collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  void testUnusableBookIsRecomputed() throws Exception {
+    Corpus guesses = randomCorpus(100, 8);
+    Corpus answers = randomCorpus(60, 9);
+    Path path = directory.resolve("answers.book");
+    OpeningBook.compute(guesses, answers).save(path);
+    byte[] saved = Files.readAllBytes(path);
+
+    byte[] otherFormat = saved.clone();
+    otherFormat[3]++;
+    List<byte[]> unusable =
+        List.of(otherFormat, Arrays.copyOf(saved, saved.length / 2), new byte[] {0, 0});
+    for (byte[] contents : unusable) {
+      Files.write(path, contents);
+      assertTrue(OpeningBook.load(path, guesses, answers).isEmpty());
+
+      assertTrue(OpeningBook.of(path, guesses, answers).isValidFor(guesses, answers));
+      assertTrue(OpeningBook.load(path, guesses, answers).isPresent());
+    }
+  }
+
+  @Test
+  void testConcurrentSavesLeaveOneBook() throws Exception {
+    Corpus guesses = randomCorpus(100, 10);
+    Corpus answers = randomCorpus(60, 11);
+    Path path = directory.resolve("answers.book");
+    OpeningBook book = OpeningBook.compute(guesses, answers);
+
+    IntStream.range(0, 16).parallel().forEach(i -> book.save(path));
+
+    assertTrue(OpeningBook.load(path, guesses, answers).isPresent());
+    try (Stream<Path> files = Files.list(directory)) {
+      assertEquals(List.of(path), files.collect(Collectors.toList()));
+    }
+  }
+
+  @Test
+  void testContentHashIgnoresOrder() {
+    Corpus a = Corpus.Builder.EMPTY().add(NGram.from("route")).add(NGram.from("rebus")).build();
+    Corpus b = Corpus.Builder.EMPTY().add(NGram.from("rebus")).add(NGram.from("route")).build();
+
+    assertEquals(a.contentHash(), b.contentHash());
+    assertNotEquals(a.contentHash(), a.without(NGram.from("route")).contentHash());
+  }
+
+  @Test
+  void testMissingBook() {
+    Corpus corpus = randomCorpus(10, 7);
+    assertTrue(OpeningBook.load(directory.resolve("missing"), corpus, corpus).isEmpty());
+    assertTrue(OpeningBook.compute(corpus, Corpus.Builder.EMPTY().build()).opening().isEmpty());
+  }
+}
@@ -0,0 +1,79 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class PersistentSetTest {
+
+  /** A key whose hash code is chosen by the test, to force collisions. */
+  private record Key(int id, int hash) {
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  @Test
+  void testMatchesHashSet() {
+    Random random = new Random(293);
+    Set<Integer> expected = new HashSet<>();
+    PersistentSet<Integer> actual = PersistentSet.empty();
+
+    for (int i = 0; i < 20_000; i++) {
+      int value = random.nextInt(5_000);
+      if (random.nextBoolean()) {
+        expected.add(value);
+        actual = actual.with(value);
+      } else {
+        expected.remove(value);
+        actual = actual.without(value);
+      }
+    }
+
+    assertEquals(expected.size(), actual.size());
+    assertEquals(expected, actual);
+    assertEquals(expected, new HashSet<>(actual));
+  }
+
+  @Test
+  void testOldVersionsUnchanged() {
+    PersistentSet<String> empty = PersistentSet.empty();
+    PersistentSet<String> one = empty.with("route");
+    PersistentSet<String> two = one.with("rebus");
+    PersistentSet<String> back = two.without("route");
+
+    assertEquals(Set.of(), empty);
+    assertEquals(Set.of("route"), one);
+    assertEquals(Set.of("route", "rebus"), two);
+    assertEquals(Set.of("rebus"), back);
+    assertSame(two, two.with("rebus"));
+    assertSame(two, two.without("hello"));
+  }
+
+  @Test
+  void testCollisions() {
+    List<Key> keys = List.of(new Key(1, 7), new Key(2, 7), new Key(3, 7), new Key(4, 7 + 32));
+    PersistentSet<Key> set = PersistentSet.of(keys);
+
+    assertEquals(Set.copyOf(keys), set);
+    assertTrue(set.contains(new Key(2, 7)));
+    assertFalse(set.contains(new Key(5, 7)));
+
+    PersistentSet<Key> removed = set.without(new Key(2, 7)).without(new Key(1, 7));
+    assertEquals(Set.of(new Key(3, 7), new Key(4, 39)), removed);
+    assertEquals(0, removed.without(new Key(3, 7)).without(new Key(4, 39)).size());
+  }
+
+  @Test
+  void testImmutable() {
+    PersistentSet<String> set = PersistentSet.of(List.of("route"));
+    assertThrows(UnsupportedOperationException.class, () -> set.add("rebus"));
+    assertThrows(NullPointerException.class, () -> set.with(null));
+    assertFalse(set.contains(null));
+  }
+}
@@ -0,0 +1,111 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class QueryTest {
+
+  private static final Corpus CORPUS =
+      corpus("eerie", "geese", "speed", "abbey", "lever", "route", "rebus", "redux", "hello");
+
+  private static Corpus corpus(String... words) {
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    List.of(words).stream().map(NGram::from).forEach(builder::add);
+    return builder.build();
+  }
+
+  private static List<String> find(Corpus corpus, String query) {
+    return corpus.find(Query.parse(query)).stream()
+        .map(NGram::toString)
+        .collect(Collectors.toList());
+  }
+
+  @Test
+  void testParse() {
+    Query query = Query.parse("r?d?x +ae -t 3:[aei]");
+
+    assertEquals(OptionalInt.of(5), query.length());
+    assertEquals(
+        Set.of(
+            new IndexedCharacter(0, 'r'),
+            new IndexedCharacter(2, 'd'),
+            new IndexedCharacter(4, 'x')),
+        query.constraint().fixed());
+    assertEquals(Map.of(2, Set.of('a', 'e', 'i')), query.constraint().allowed());
+    assertEquals(Set.of('a', 'e'), query.constraint().required());
+    assertEquals(Set.of('t'), query.constraint().absent());
+    assertEquals(OptionalInt.empty(), Query.parse(" +a ").length());
+    assertEquals(Constraint.NONE, Query.parse("").constraint());
+  }
+
+  @Test
+  void testFind() {
+    assertEquals(List.of("redux"), find(CORPUS, "r?d?x"));
+    assertEquals(List.of("rebus", "redux"), find(CORPUS, "re???"));
+    assertEquals(List.of("abbey", "lever", "rebus"), find(CORPUS, "+e -t 3:[bvx]"));
+    assertEquals(List.of("geese", "speed"), find(CORPUS, "?[ep]e??"));
+    assertEquals(List.of("eerie"), find(CORPUS, "+ir"));
+    assertEquals(List.of(), find(CORPUS, "r?d?xy"));
+    assertEquals(List.of(), find(CORPUS, "??[ab]?? 3:[cd]"));
+    assertEquals(CORPUS.getCorpus().size(), CORPUS.size(Query.parse("?????")));
+    assertEquals(0, Corpus.Builder.EMPTY().build().size(Query.parse("+a")));
+  }
+
+  @Test
+  void testIndexMatchesFilter() {
+    Random random = new Random(41);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, 5_000)
+        .mapToObj(i -> random.ints(5, 'a', 'k').mapToObj(c -> String.valueOf((char) c)))
+        .map(chars -> NGram.from(chars.collect(Collectors.joining())))
+        .forEach(builder::add);
+    Corpus corpus = builder.build();
+
+    for (String text :
+        List.of("a?c??", "[abc]???[de]", "+abc -d", "2:[ab] 5:j", "+j ?[ab]??? -a", "h????")) {
+      Query query = Query.parse(text);
+      assertEquals(corpus.size(query.filter()), corpus.size(query), text);
+      assertEquals(
+          corpus.getCorpus().stream()
+              .filter(query.filter()::test)
+              .map(NGram::toString)
+              .sorted()
+              .collect(Collectors.toList()),
+          find(corpus, text),
+          text);
+    }
+  }
+
+  @Test
+  void testOnlyQueriesWithoutPatternHaveStructuredFilters() {
+    Query letters = Query.parse("+ae 2:[bcd] -f");
+    Query pattern = Query.parse("?a??? -f");
+
+    assertEquals(Optional.of(letters.constraint()), letters.filter().constraint());
+    assertTrue(pattern.filter().constraint().isEmpty());
+    assertFalse(pattern.filter().test(NGram.from("cab")));
+    assertTrue(Filter.of(pattern.constraint()).test(NGram.from("cab")));
+  }
+
+  @Test
+  void testInvalidQueries() {
+    assertThrows(NullPointerException.class, () -> Query.parse(null));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("r?d?x ?e???"));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("+"));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("r[ab"));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("r[]x"));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("ab]"));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("0:a"));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("3:?"));
+    assertThrows(IllegalArgumentException.class, () -> Query.parse("3:ab"));
+  }
+}
@@ -0,0 +1,108 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReplayTest {
+
+  private static final Corpus ANSWERS = corpus();
+
+  private static final List<String> LOG =
+      List.of(
+          "# answer guesses...",
+          "redux route rebus redux",
+          "",
+          "hello lever hello",
+          "geese speed eerie geese abbey");
+
+  private static Corpus corpus() {
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    List.of("eerie", "geese", "speed", "abbey", "lever", "route", "rebus", "redux", "hello")
+        .stream()
+        .map(NGram::from)
+        .forEach(builder::add);
+    return builder.build();
+  }
+
+  /** Plays a game without the harness, returning the candidates left once it ends. */
+  private static long remaining(Replay.Game game) {
+    List<NGram> candidates = List.copyOf(ANSWERS.getCorpus());
+    for (NGram guess : game.guesses()) {
+      Filter hint = NGramMatcher.of(game.answer(), guess).match();
+      candidates = candidates.stream().filter(hint::test).collect(Collectors.toList());
+      if (guess.equals(game.answer())) {
+        break;
+      }
+    }
+    return candidates.size();
+  }
+
+  @Test
+  void testParse() {
+    List<Replay.Game> games = Replay.parse(LOG);
+
+    assertEquals(3, games.size());
+    assertEquals(NGram.from("redux"), games.get(0).answer());
+    assertEquals(
+        List.of(NGram.from("route"), NGram.from("rebus"), NGram.from("redux")),
+        games.get(0).guesses());
+    IllegalArgumentException e =
+        assertThrows(
+            IllegalArgumentException.class, () -> Replay.parse(List.of("hello", "hello hell")));
+    assertTrue(e.getMessage().startsWith("line 2"));
+  }
+
+  @Test
+  void testRead(@TempDir Path directory) throws IOException {
+    Path log = directory.resolve("games.log");
+    Files.write(log, LOG);
+    assertEquals(Replay.parse(LOG), Replay.read(log));
+  }
+
+  @Test
+  void testConcurrentReplay() throws InterruptedException {
+    List<Replay.Game> games =
+        IntStream.range(0, 50)
+            .mapToObj(i -> Replay.parse(LOG).get(i % 3))
+            .collect(Collectors.toList());
+    Replay.Report report = Replay.of(ANSWERS, games).run(4, 0);
+
+    assertEquals(50, report.games());
+    assertEquals(games.stream().mapToLong(game -> game.guesses().size()).sum(), report.guesses());
+    assertEquals(games.stream().mapToLong(ReplayTest::remaining).sum(), report.remaining());
+    assertTrue(report.p50() > 0);
+    assertTrue(report.p50() <= report.p90());
+    assertTrue(report.p90() <= report.p99());
+    assertTrue(report.p99() <= report.max());
+    assertTrue(report.throughput() > 0);
+    assertTrue(report.allocatedPerGame() > 0 || report.allocated() == -1);
+    assertTrue(report.toString().startsWith("games=50 guesses="));
+  }
+
+  @Test
+  void testRateLimitedReplay() throws InterruptedException {
+    List<Replay.Game> games =
+        IntStream.range(0, 20).mapToObj(i -> Replay.parse(LOG).get(0)).collect(Collectors.toList());
+    Replay.Report report = Replay.of(ANSWERS, games).run(2, 200);
+
+    assertEquals(20, report.games());
+    assertTrue(report.elapsed().compareTo(Duration.ofMillis(90)) >= 0, report.toString());
+  }
+
+  @Test
+  void testInvalidRuns() {
+    Replay replay = Replay.of(ANSWERS, List.of());
+    assertThrows(IllegalArgumentException.class, () -> replay.run(0, 0));
+    assertThrows(IllegalArgumentException.class, () -> replay.run(1, -1));
+    assertThrows(NullPointerException.class, () -> Replay.of(null, List.of()));
+  }
+}
@@ -0,0 +1,156 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SessionManagerTest {
+
+  private static final Corpus ANSWERS =
+      Corpus.Builder.EMPTY()
+          .add(NGram.from("route"))
+          .add(NGram.from("rebus"))
+          .add(NGram.from("redux"))
+          .add(NGram.from("hello"))
+          .add(NGram.from("ready"))
+          .build();
+
+  private static Filter hint(String key, String guess) {
+    return NGramMatcher.of(NGram.from(key), NGram.from(guess)).match();
+  }
+
+  @Test
+  void testNarrowSession() {
+    SessionManager sessions = SessionManager.of(Duration.ofMinutes(1));
+    sessions.open("tenant", "game", ANSWERS);
+
+    assertEquals(5, sessions.candidateCount("game"));
+    assertEquals(2, sessions.narrow("game", hint("rebus", "route")));
+    assertEquals(
+        Corpus.Builder.EMPTY().add(NGram.from("rebus")).add(NGram.from("redux")).build().corpus(),
+        sessions.candidates("game").corpus());
+  }
+
+  @Test
+  void testSessionsShareIndex() {
+    SessionManager sessions = SessionManager.of(Duration.ofMinutes(1));
+    sessions.open("a", "one", ANSWERS);
+    WordIndex index = ANSWERS.index();
+    sessions.open("b", "two", ANSWERS);
+    sessions.narrow("one", hint("hello", "route"));
+    sessions.narrow("two", hint("ready", "route"));
+
+    assertSame(index, ANSWERS.index());
+    assertEquals(
+        Corpus.Builder.EMPTY().add(NGram.from("hello")).build().corpus(),
+        sessions.candidates("one").corpus());
+    assertEquals(
+        Corpus.Builder.EMPTY().add(NGram.from("ready")).build().corpus(),
+        sessions.candidates("two").corpus());
+  }
+
+  @Test
+  void testConcurrentNarrowing() {
+    SessionManager sessions = SessionManager.of(Duration.ofMinutes(1));
+    IntStream.range(0, 1000).forEach(i -> sessions.open("tenant", "game" + i, ANSWERS));
+
+    IntStream.range(0, 1000)
+        .parallel()
+        .forEach(
+            i -> {
+              sessions.narrow("game" + i, hint("rebus", "route"));
+              sessions.narrow("game" + i, hint("rebus", "redux"));
+            });
+
+    IntStream.range(0, 1000).forEach(i -> assertEquals(1, sessions.candidateCount("game" + i)));
+  }
+
+  @Test
+  void testDuplicateAndMissingSessions() {
+    SessionManager sessions = SessionManager.of(Duration.ofMinutes(1));
+    sessions.open("tenant", "game", ANSWERS);
+
+    assertThrows(IllegalArgumentException.class, () -> sessions.open("tenant", "game", ANSWERS));
+    assertThrows(NoSuchElementException.class, () -> sessions.candidateCount("missing"));
+    assertTrue(sessions.close("game"));
+    assertFalse(sessions.close("game"));
+  }
+
+  @Test
+  void testIdleSessionsEvicted() {
+    AtomicLong now = new AtomicLong();
+    SessionManager sessions = SessionManager.of(Duration.ofNanos(100), now::get);
+    sessions.open("tenant", "idle", ANSWERS);
+    sessions.open("tenant", "busy", ANSWERS);
+
+    now.set(80);
+    sessions.candidateCount("busy");
+    now.set(150);
+
+    assertEquals(1, sessions.evictIdle());
+    assertEquals(1, sessions.sessionCount());
+    assertThrows(NoSuchElementException.class, () -> sessions.candidateCount("idle"));
+  }
+
+  @Test
+  void testMemoryAccountedPerTenant() {
+    SessionManager sessions = SessionManager.of(Duration.ofMinutes(1));
+    sessions.open("a", "one", ANSWERS);
+    sessions.open("a", "two", ANSWERS);
+    sessions.open("b", "three", ANSWERS);
+
+    assertEquals(2 * SessionManager.SESSION_BYTES, sessions.memoryUsage("a"));
+    sessions.narrow("three", hint("rebus", "route"));
+    assertEquals(SessionManager.SESSION_BYTES + 16 + 2 * 4, sessions.memoryUsage("b"));
+
+    sessions.close("three");
+    assertEquals(0, sessions.memoryUsage("b"));
+    assertEquals(0, sessions.memoryUsage("unknown"));
+  }
+
+  @Test
+  void testCloseRacingNarrowLeavesNoCharge() throws InterruptedException {
+    SessionManager sessions = SessionManager.of(Duration.ofMinutes(1));
+    for (int round = 0; round < 500; round++) {
+      String id = "game-" + round;
+      sessions.open("racer", id, ANSWERS);
+      Thread narrower =
+          new Thread(
+              () -> {
+                try {
+                  sessions.narrow(id, hint("rebus", "route"));
+                  sessions.narrow(id, hint("rebus", "ready"));
+                } catch (NoSuchElementException closed) {
+                  // the session closed first
+                }
+              });
+      narrower.start();
+      sessions.close(id);
+      narrower.join();
+
+      assertEquals(0, sessions.memoryUsage("racer"), "round " + round);
+    }
+    assertEquals(0, sessions.tenantCount());
+  }
+
+  @Test
+  void testTenantDroppedWithItsLastSession() {
+    SessionManager sessions = SessionManager.of(Duration.ofMinutes(1));
+    sessions.open("a", "one", ANSWERS);
+    sessions.open("a", "two", ANSWERS);
+    assertThrows(IllegalArgumentException.class, () -> sessions.open("a", "two", ANSWERS));
+    assertEquals(1, sessions.tenantCount());
+
+    sessions.close("one");
+    assertEquals(1, sessions.tenantCount());
+    sessions.close("two");
+    assertFalse(sessions.close("two"));
+    assertEquals(0, sessions.tenantCount());
+    assertThrows(
+        NoSuchElementException.class, () -> sessions.narrow("two", hint("rebus", "route")));
+  }
+}
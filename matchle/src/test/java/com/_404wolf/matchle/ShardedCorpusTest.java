@@ -0,0 +1,180 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardedCorpusTest {
+
+  private static final int SHARDS = 3;
+
+  @TempDir Path directory;
+
+  private final List<Process> workers = new ArrayList<>();
+  private final List<Path> sockets = new ArrayList<>();
+
+  private static Corpus randomCorpus(int size) {
+    Random random = new Random(293);
+    Corpus.Builder builder = Corpus.Builder.EMPTY();
+    IntStream.range(0, size)
+        .mapToObj(i -> random.ints(5, 'a', 'h').mapToObj(c -> String.valueOf((char) c)))
+        .map(chars -> NGram.from(chars.collect(Collectors.joining())))
+        .forEach(builder::add);
+    return builder.build();
+  }
+
+  @BeforeEach
+  void startWorkers() throws IOException, InterruptedException {
+    String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    for (int i = 0; i < SHARDS; i++) {
+      Path socket = directory.resolve("shard-" + i + ".sock");
+      sockets.add(socket);
+      workers.add(
+          new ProcessBuilder(
+                  java,
+                  "-cp",
+                  System.getProperty("java.class.path"),
+                  ShardServer.class.getName(),
+                  socket.toString())
+              .inheritIO()
+              .start());
+    }
+    for (Path socket : sockets) {
+      for (int wait = 0; wait < 200 && !isListening(socket); wait++) {
+        Thread.sleep(50);
+      }
+    }
+  }
+
+  /**
+   * The socket file appears on bind, just before the worker listens, so probe with a connection.
+   */
+  private static boolean isListening(Path socket) {
+    if (!Files.exists(socket)) {
+      return false;
+    }
+    try (SocketChannel probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      return probe.connect(UnixDomainSocketAddress.of(socket));
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @AfterEach
+  void stopWorkers() {
+    workers.forEach(Process::destroy);
+  }
+
+  @Test
+  void testScatterGather() {
+    Corpus corpus = randomCorpus(3_000);
+    Filter filter = NGramMatcher.of(NGram.from("faced"), NGram.from("decaf")).match();
+    NGram guess = NGram.from("cadge");
+
+    try (ShardedCorpus sharded = ShardedCorpus.of(corpus, sockets)) {
+      assertEquals(corpus.size(filter), sharded.size(filter));
+      assertEquals(
+          corpus.getCorpus().stream().filter(filter::test).collect(Collectors.toSet()),
+          sharded.matches(filter));
+
+      Map<Integer, Long> expected =
+          corpus.getCorpus().stream()
+              .collect(
+                  Collectors.groupingBy(
+                      word -> NGramMatcher.pattern(word, guess), Collectors.counting()));
+      assertEquals(expected, sharded.partition(guess));
+
+      Filter query = Query.parse("+ae 2:[bcd] -f").filter();
+      assertEquals(corpus.size(query), sharded.size(query));
+      Filter pattern = Query.parse("?a???").filter();
+      assertThrows(IllegalArgumentException.class, () -> sharded.size(pattern));
+    }
+  }
+
+  @Test
+  void testFilters() {
+    Corpus corpus = randomCorpus(10);
+    try (ShardedCorpus sharded = ShardedCorpus.of(corpus, sockets)) {
+      assertThrows(IllegalArgumentException.class, () -> sharded.size(Filter.from(n -> true)));
+      assertEquals(
+          Set.of(),
+          sharded.matches(
+              Filter.of(Constraint.absent('a'))
+                  .and(Optional.of(Filter.of(Constraint.fixed(new IndexedCharacter(0, 'a')))))));
+    }
+  }
+
+  @Test
+  void testFailedConnectReleasesOpenedShards() {
+    Corpus corpus = randomCorpus(100);
+    List<Path> unreachable = List.of(sockets.get(0), directory.resolve("missing.sock"));
+    assertThrows(UncheckedIOException.class, () -> ShardedCorpus.of(corpus, unreachable));
+
+    try (ShardedCorpus sharded = ShardedCorpus.of(corpus, sockets)) {
+      assertEquals(corpus.getCorpus().size(), sharded.size(Filter.of(Constraint.absent('z'))));
+    }
+  }
+
+  @Test
+  void testUnknownOpcodeClosesOnlyItsConnection() throws IOException {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(sockets.get(0)));
+      channel.write(ByteBuffer.wrap(new byte[] {99}));
+      assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+    }
+
+    Corpus corpus = randomCorpus(100);
+    try (ShardedCorpus sharded = ShardedCorpus.of(corpus, sockets)) {
+      assertEquals(corpus.getCorpus().size(), sharded.size(Filter.of(Constraint.absent('z'))));
+    }
+  }
+
+  /** Sends a raw request and returns what the worker answers before closing the connection. */
+  private static int sendRaw(Path socket, byte[] request) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+      channel.connect(UnixDomainSocketAddress.of(socket));
+      channel.write(ByteBuffer.wrap(request));
+      return channel.read(ByteBuffer.allocate(1));
+    }
+  }
+
+  @Test
+  void testMalformedRequestsCloseOnlyTheirConnection() throws IOException {
+    Path socket = sockets.get(1);
+    assertEquals(-1, sendRaw(socket, new byte[] {ShardProtocol.COUNT, 0, 0, 0, 0}));
+    assertEquals(-1, sendRaw(socket, new byte[] {ShardProtocol.LOAD, -1, -1, -1, -1}));
+
+    ByteArrayOutputStream mixed = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(mixed)) {
+      out.writeByte(ShardProtocol.LOAD);
+      ShardProtocol.writeWords(out, List.of(NGram.from("abcde"), NGram.from("abc")));
+    }
+    assertEquals(-1, sendRaw(socket, mixed.toByteArray()));
+
+    Corpus corpus = randomCorpus(100);
+    try (ShardedCorpus sharded = ShardedCorpus.of(corpus, sockets)) {
+      assertEquals(corpus.getCorpus().size(), sharded.size(Filter.of(Constraint.absent('z'))));
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com._404wolf.matchle;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class SharedScanTest {
+
+  private static List<NGram> randomWords(int size, long seed) {
+    Random random = new Random(seed);
+    return IntStream.range(0, size)
+        .mapToObj(
+            i ->
+                random
+                    .ints(5, 'a', 'k')
+                    .mapToObj(c -> String.valueOf((char) c))
+                    .collect(Collectors.joining()))
+        .map(NGram::from)
+        .collect(Collectors.toList());
+  }
+
+  private static List<Filter> filters(List<NGram> words) {
+    List<Filter> filters = new ArrayList<>();
+    NGram key = words.get(0);
+    words.subList(1, 40).forEach(guess -> filters.add(NGramMatcher.of(key, guess).match()));
+    filters.add(Filter.from(ngram -> ngram.contains('a')));
+    filters.add(Filter.FALSE);
+    return filters;
+  }
+
+  @Test
+  void testSizesMatchSeparateScans() {
+    Corpus corpus = Corpus.Builder.EMPTY().addAll(randomWords(10_000, 40)).build();
+    List<Filter> filters = filters(new ArrayList<>(corpus.getCorpus()));
+
+    long[] expected = filters.stream().mapToLong(corpus::size).toArray();
+
+    assertArrayEquals(expected, corpus.sizes(filters, false));
+    assertArrayEquals(expected, corpus.sizes(filters, true));
+  }
+
+  @Test
+  void testMembersMatchSeparateScans() {
+    for (int size : new int[] {100, 5_000}) {
+      Corpus corpus = Corpus.Builder.EMPTY().addAll(randomWords(size, size)).build();
+      List<Filter> filters = filters(new ArrayList<>(corpus.getCorpus()));
+
+      List<BitSet> members = corpus.members(filters, true);
+
+      assertEquals(filters.size(), members.size());
+      for (int f = 0; f < filters.size(); f++) {
+        Filter filter = filters.get(f);
+        BitSet expected = new BitSet();
+        IntStream.range(0, corpus.getCorpus().size())
+            .filter(id -> filter.test(corpus.word(id)))
+            .forEach(expected::set);
+        assertEquals(expected, members.get(f));
+      }
+      assertEquals(members, corpus.members(filters, false));
+    }
+  }
+
+  @Test
+  void testEmptyBatchAndCorpus() {
+    Corpus corpus = Corpus.Builder.EMPTY().addAll(randomWords(10, 1)).build();
+    assertEquals(0, corpus.sizes(List.of(), true).length);
+    assertArrayEquals(
+        new long[] {0}, Corpus.Builder.EMPTY().build().sizes(List.of(Filter.FALSE), true));
+    assertThrows(NullPointerException.class, () -> corpus.sizes(null, false));
+  }
+}